@@ -1,25 +1,45 @@
 package com.blakec;
 
+import com.blakec.graph.CompactGraph;
+import com.blakec.graph.Deadline;
 import com.blakec.graph.Graph;
+import com.blakec.graph.GraphSnapshot;
+import com.blakec.graph.Heuristic;
+import com.blakec.graph.LongestPathResult;
 import com.blakec.graph.Path;
+import com.blakec.graph.SearchContext;
+import com.blakec.graph.SearchContextPool;
+import com.blakec.graph.ShortestPathTree;
 import com.blakec.graph.Vertex;
-import com.google.common.collect.ImmutableMap;
+import com.blakec.graph.VertexIndex;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
 
 /**
  * Created by blakec on 6/2/15.
  * <p/>
  * Board that represents an M x N grid that a knight can move around.
+ * <p/>
+ * A board is immutable once created, so a single loaded board can be shared by any number of threads and queried
+ * at once.  The position graph is built on first use and then shared as well.
  */
 public class Board implements Vertex {
-    final Logger logger = Logger.getLogger(String.valueOf(Board.class));
+    final static Logger logger = Logger.getLogger(String.valueOf(Board.class));
     /**
      * The length of the short part of a knight's movement.
      */
@@ -56,49 +76,73 @@ public class Board implements Vertex {
     final static char ROCK_CHAR = 'R';
     final static char BARRIER_CHAR = 'B';
     final static char KNIGHT_CHAR = 'K';
+    /**
+     * Most search contexts a board keeps between shortest path queries.
+     */
+    final static int MAX_IDLE_SEARCH_CONTEXTS = 2;
+    /**
+     * Largest board, in cells, that keeps search contexts between queries.  A context takes about 28 bytes per cell,
+     * so 28MB at this size.  Larger boards allocate a context per query and let it go afterwards rather than hold
+     * hundreds of megabytes for as long as the board lives, 450MB a context on a 4096x4096 board.
+     */
+    final static int MAX_POOLED_SEARCH_CELLS = 1 << 20;
 
     /**
      * Position of the boards origin.  For most boards this is (0,0).  However when finding longest path
      * boards will be broken into sub boards that have their base position be each sub boards origin in the
      * larger board.
      */
-    final Position basePosition;
+    private final Position basePosition;
     /**
      * width of the board.
      */
-    final int width;
+    private final int width;
     /**
      * height of the board.
      */
-    final int height;
+    private final int height;
+    /**
+     * Terrain code of each cell, indexed by row major cell index relative to the base position.
+     */
+    private final byte[] terrain;
     /**
-     * Set of position's representing locations where teleporters reside.
+     * Cell indices of the teleporters on this board.
      */
-    final Set<Position> teleporters = Sets.newHashSet();
+    private final int[] teleporters;
     /**
-     * Set of position's representing locations where lava resides.
+     * Legal knight moves of each cell, indexed like the terrain.  Bit i is set if the movement with ordinal i
+     * starts on a valid position, lands on a valid position and does not cross a barrier.
      */
-    final Set<Position> lava = Sets.newHashSet();
+    private final byte[] moveMasks;
     /**
-     * Set of position's representing locations where rocks reside.
+     * Graph of the knight moves on this board, built on first use.  The terrain is fixed once the board is
+     * created so the graph never has to be rebuilt.
      */
-    final Set<Position> rocks = Sets.newHashSet();
+    private volatile CompactGraph positionGraph;
     /**
-     * Set of position's representing locations where barriers reside.
+     * Search scratch space for shortest path queries on this board, so repeated queries don't allocate per position
+     * arrays.  Only a few contexts are kept between queries however many threads have queried the board, and none
+     * on boards larger than {@link #MAX_POOLED_SEARCH_CELLS}.
      */
-    final Set<Position> barriers = Sets.newHashSet();
+    private final SearchContextPool searchContexts;
     /**
-     * Set of position's representing locations where water resides.
+     * A* heuristic of this board, built on first use.
      */
-    final Set<Position> water = Sets.newHashSet();
+    private volatile Heuristic knightDistanceHeuristic;
 
-    final Map<Character, Set<Position>> characterToSpecialPosition = ImmutableMap.<Character, Set<Position>>builder()
-            .put(TELEPORTER_CHAR, teleporters)
-            .put(LAVA_CHAR, lava)
-            .put(ROCK_CHAR, rocks)
-            .put(BARRIER_CHAR, barriers)
-            .put(WATER_CHAR, water)
-            .build();
+    /**
+     * Terrain codes stored per cell.  A blank cell is 0 so new boards need no fill.
+     */
+    final static byte BLANK = 0;
+    final static byte TELEPORTER = 1;
+    final static byte LAVA = 2;
+    final static byte ROCK = 3;
+    final static byte BARRIER = 4;
+    final static byte WATER = 5;
+    /**
+     * Character of each terrain code.
+     */
+    final static char[] TERRAIN_CHARS = {DEFAULT_CHAR, TELEPORTER_CHAR, LAVA_CHAR, ROCK_CHAR, BARRIER_CHAR, WATER_CHAR};
 
     /**
      * @param board board represented by a grid of '.', 'W', 'R', 'B', 'T' characters.
@@ -109,32 +153,125 @@ public class Board implements Vertex {
      *              Upper left is 0,0.  Bottom right is width,height.
      */
     public Board(final String board) throws IOException {
+        this(BoardReader.read(board));
+    }
+
+    private Board(final BoardReader reader) {
+        this(reader.width, reader.height, reader.terrain, reader.numTeleporters);
+    }
+
+    /**
+     * Creates a board from terrain that has already been read.  The arrays are used as is, not copied.
+     *
+     * @param terrain        terrain code of each cell in row major order.
+     * @param numTeleporters number of teleporters in the terrain.
+     */
+    Board(final int width, final int height, final byte[] terrain, final int numTeleporters) {
         // set base position to be 0,0,
         basePosition = new Position(0, 0);
-        // read in the board string, split on newline for rows
-        // confirm size of everything is appropriate
-        final List<String> rows = Lists.newArrayList(board.replaceAll(" ", "").split("\n"));
-        height = rows.size();
-        if (rows.isEmpty()) {
-            throw new IOException("The board cannot have 0 rows.");
-        }
-        width = rows.get(0).length();
-        // iterate over each cell in the string grid to extract
-        // position type.
-        for (int r = 0; r < rows.size(); r++) {
-            final String row = rows.get(r);
-            if (row.length() != width) {
-                throw new IOException("The input string has rows with unequal lengths.");
-            }
-            for (int c = 0; c < row.length(); c++) {
-                final Position p = getBasePosition().add(new Position(r, c));
-                final char positionType = row.charAt(c);
-                if (characterToSpecialPosition.containsKey(positionType)) {
-                    characterToSpecialPosition.get(positionType).add(p);
-                }
-            }
-        }
+        this.width = width;
+        this.height = height;
+        this.terrain = terrain;
+        this.teleporters = findTeleporters(terrain, numTeleporters);
+        this.moveMasks = computeMoveMasks();
+        this.searchContexts = createSearchContextPool(width * height);
+    }
 
+    /**
+     * @return pool of the search contexts a board of the given number of cells keeps between queries.
+     */
+    static SearchContextPool createSearchContextPool(final int numCells) {
+        return new SearchContextPool(numCells, numCells <= MAX_POOLED_SEARCH_CELLS ? MAX_IDLE_SEARCH_CONTEXTS : 0);
+    }
+
+    /**
+     * Reads a board without holding its text in memory, so boards far larger than fit in a string can be loaded.
+     *
+     * @param in stream of the board in the format of {@link #Board(String)}.  It is read to the end but not closed.
+     * @return board read from the stream.
+     */
+    public static Board read(final InputStream in) throws IOException {
+        return new Board(BoardReader.read(in));
+    }
+
+    /**
+     * Reads a board from a file by memory mapping it.
+     *
+     * @param file file of the board in the format of {@link #Board(String)}.
+     * @return board read from the file.
+     * @see #read(InputStream)
+     */
+    public static Board load(final java.nio.file.Path file) throws IOException {
+        return new Board(BoardReader.read(file));
+    }
+
+    /**
+     * Reads a board from a file along with the graph of knight movements written for it by
+     * {@link #writePositionGraph(OutputStream)}, so the graph needn't be generated.  The graph is in place before the
+     * board is returned.
+     *
+     * @param file      file of the board in the format of {@link #Board(String)}.
+     * @param graphFile snapshot of the position graph.
+     * @return board read from the file.
+     * @throws IOException if either file can't be read, or the snapshot isn't of a board with the same size and
+     *                     terrain.
+     */
+    public static Board load(final java.nio.file.Path file, final java.nio.file.Path graphFile) throws IOException {
+        return load(file).withPositionGraph(graphFile);
+    }
+
+    /**
+     * Reads a board written by {@link #writeBinary(OutputStream)}.
+     *
+     * @param in stream of the binary board.  It is read to the end but not closed.
+     * @return board read from the stream.
+     * @see BoardFile
+     */
+    public static Board readBinary(final InputStream in) throws IOException {
+        return BoardFile.read(in);
+    }
+
+    /**
+     * Reads a board written by {@link #writeBinary(OutputStream)} from a file by memory mapping it.
+     *
+     * @param file file of the binary board.
+     * @return board read from the file.
+     * @see BoardFile
+     */
+    public static Board loadBinary(final java.nio.file.Path file) throws IOException {
+        return BoardFile.read(file);
+    }
+
+    /**
+     * Reads a binary board from a file along with the graph of knight movements written for it.
+     *
+     * @param file      file of the binary board.
+     * @param graphFile snapshot of the position graph.
+     * @return board read from the file.
+     * @see #load(java.nio.file.Path, java.nio.file.Path)
+     */
+    public static Board loadBinary(final java.nio.file.Path file, final java.nio.file.Path graphFile) throws IOException {
+        return loadBinary(file).withPositionGraph(graphFile);
+    }
+
+    /**
+     * Sets the graph of a board that has just been read and not yet shared with any other thread.
+     *
+     * @return this board.
+     */
+    private Board withPositionGraph(final java.nio.file.Path graphFile) throws IOException {
+        positionGraph = GraphSnapshot.read(graphFile, getPositionIndex(), computeChecksum());
+        return this;
+    }
+
+    /**
+     * Writes this board in the binary format.  The base position isn't written, the board is read back at (0, 0).
+     *
+     * @param out stream to write to.  Flushed but not closed.
+     * @see BoardFile
+     */
+    public void writeBinary(final OutputStream out) throws IOException {
+        BoardFile.write(this, out);
     }
 
     /**
@@ -149,6 +286,94 @@ public class Board implements Vertex {
         basePosition = new Position(baseRow, baseCol);
         this.width = width;
         this.height = height;
+        this.terrain = new byte[width * height];
+        this.teleporters = new int[0];
+        this.moveMasks = computeMoveMasks();
+        this.searchContexts = createSearchContextPool(width * height);
+    }
+
+    /**
+     * @param positionType character of a position type.
+     * @return terrain code of the character.  Unknown characters are blank.
+     */
+    static byte terrainOf(final char positionType) {
+        switch (positionType) {
+            case TELEPORTER_CHAR:
+                return TELEPORTER;
+            case LAVA_CHAR:
+                return LAVA;
+            case ROCK_CHAR:
+                return ROCK;
+            case BARRIER_CHAR:
+                return BARRIER;
+            case WATER_CHAR:
+                return WATER;
+            default:
+                return BLANK;
+        }
+    }
+
+    /**
+     * Computes the legal knight moves of every cell.  Done once when the board is created so move validation
+     * and graph generation are a table lookup.
+     *
+     * @return legal move mask of each cell.
+     */
+    byte[] computeMoveMasks() {
+        final byte[] masks = new byte[width * height];
+        // every bit set for the terrain a knight can land on and none for rocks and barriers, so each movement's
+        // bit is added to every cell in a single pass without branching.
+        final byte[] landingBits = new byte[TERRAIN_CHARS.length];
+        Arrays.fill(landingBits, (byte) -1);
+        landingBits[ROCK] = 0;
+        landingBits[BARRIER] = 0;
+        for (final Movement d : MOVEMENTS) {
+            final byte bit = (byte) (1 << d.ordinal());
+            final int cellOffset = d.dRows * width + d.dColumns;
+            final int fromCol = Math.max(0, -d.dColumns);
+            final int toCol = Math.min(width, width - d.dColumns);
+            for (int row = Math.max(0, -d.dRows); row < Math.min(height, height - d.dRows); row++) {
+                final int rowStart = row * width;
+                for (int cell = rowStart + fromCol; cell < rowStart + toCol; cell++) {
+                    masks[cell] |= landingBits[terrain[cell + cellOffset]] & bit;
+                }
+            }
+        }
+        for (int cell = 0; cell < masks.length; cell++) {
+            masks[cell] &= landingBits[terrain[cell]];
+        }
+        // barriers are few, so rather than walking every move's path, clear the moves whose path crosses each one.
+        for (int cell = 0; cell < terrain.length; cell++) {
+            if (terrain[cell] != BARRIER) {
+                continue;
+            }
+            final int row = cell / width;
+            final int col = cell % width;
+            for (final Movement d : MOVEMENTS) {
+                for (int i = 0; i < d.pathRows.length; i++) {
+                    final int startRow = row - d.pathRows[i];
+                    final int startCol = col - d.pathColumns[i];
+                    if (startRow >= 0 && startRow < height && startCol >= 0 && startCol < width) {
+                        masks[startRow * width + startCol] &= ~(1 << d.ordinal());
+                    }
+                }
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * @return cell indices of all teleporters in the terrain.
+     */
+    static int[] findTeleporters(final byte[] terrain, final int numTeleporters) {
+        final int[] teleporters = new int[numTeleporters];
+        int i = 0;
+        for (int cell = 0; cell < terrain.length && i < numTeleporters; cell++) {
+            if (terrain[cell] == TELEPORTER) {
+                teleporters[i++] = cell;
+            }
+        }
+        return teleporters;
     }
 
     /**********************************
@@ -156,13 +381,61 @@ public class Board implements Vertex {
      **********************************/
 
     /**
-     * Computes the longest path between the start position and end position.
+     * Computes the longest path between the start position and end position, solving the sub boards on the
+     * common fork join pool.
      *
      * @param start Start position.
      * @param end   End position.
      * @returns Shortest Path from start to end.
+     * @see #computeLongestPath(Position, Position, ForkJoinPool)
      */
     public Path computeLongestPath(final Position start, final Position end) throws Exception {
+        return computeLongestPath(start, end, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the longest path between the start position and end position.
+     *
+     * @param start Start position.
+     * @param end   End position.
+     * @param pool  pool to solve the sub boards on.
+     * @returns Shortest Path from start to end.
+     * @see #computeLongestPath(Position, Position, ForkJoinPool, Deadline)
+     */
+    public Path computeLongestPath(final Position start, final Position end, final ForkJoinPool pool) throws Exception {
+        return computeLongestPath(start, end, pool, Deadline.none()).getPath();
+    }
+
+    /**
+     * Computes the longest path between the start position and end position on the common fork join pool,
+     * stopping once the deadline expires.
+     *
+     * @see #computeLongestPath(Position, Position, ForkJoinPool, Deadline)
+     */
+    public LongestPathResult computeLongestPath(final Position start, final Position end, final Deadline deadline) throws Exception {
+        return computeLongestPath(start, end, ForkJoinPool.commonPool(), deadline);
+    }
+
+    /**
+     * Computes the longest path between the start position and end position.
+     * <p/>
+     * The link positions between sub boards only depend on the path of sub boards and the color of each entry
+     * position, so they are all computed up front and the sub boards are then solved in parallel.
+     * <p/>
+     * Once the deadline expires every sub board search stops and returns the longest path it found so far.
+     * These still link up, as long as every sub board found some path between its link positions.
+     *
+     * @param start    Start position.
+     * @param end      End position.
+     * @param pool     pool to solve the sub boards on.
+     * @param deadline when to give up and return the longest path found so far.
+     * @returns longest path from start to end, empty if the deadline expired before a path was found in every sub
+     * board.  It is complete and has the max path size if every sub board's path is.
+     */
+    public LongestPathResult computeLongestPath(final Position start,
+                                                final Position end,
+                                                final ForkJoinPool pool,
+                                                final Deadline deadline) throws Exception {
         if (!isValidPosition(start)) {
             throw new Exception("The start position " + start + " is invalid.  Either off the board or starting on barrier or rock.");
         }
@@ -197,46 +470,215 @@ public class Board implements Vertex {
         final Board endBoard = getSubBoard(end);
         // compute the longest path from the starting board to the endboard
         // this path will end up running throguh all other sub boards.
-        Path path = graph.computeLongestPath(startBoard, endBoard, numRowsOfSubBoards * numColsOfSubBoards);
+        final LongestPathResult boardPathResult = computeBoardPath(graph, startBoard, endBoard, numRowsOfSubBoards, numColsOfSubBoards, deadline);
+        final Path path = boardPathResult.getPath();
         if (path.getPath().isEmpty()) {
-            // this should never happen, but if it does return an unsolved path an log it.
-            logger.severe("Empty path from start subgraph to end subgraph.  This should not happen please investigate.");
-            return new Path(Lists.<Vertex>newArrayList(), -1);
+            if (boardPathResult.isComplete()) {
+                // this should never happen, but if it does return an unsolved path an log it.
+                logger.severe("Empty path from start subgraph to end subgraph.  This should not happen please investigate.");
+            }
+            return new LongestPathResult(new Path(Lists.<Vertex>newArrayList(), -1), false, boardPathResult.isComplete());
         }
 
         // path of sub boards from start location to end location
         final List<Vertex> boardPath = path.getPath();
-        // longest path that will accumulate over running a knights tour/longest path
-        // in sub boards on the board path
-        final List<Vertex> longestPath = Lists.newArrayList();
-        // get the first board
-        Board curBoard = (Board) boardPath.remove(0);
-        // get the starting position on this board
+        final int numSubBoards = boardPath.size();
+        final Board[] subBoards = new Board[numSubBoards];
+        // entrance and exit position of each sub board on the board path
+        final Position[] startPositions = new Position[numSubBoards];
+        final Position[] endPositions = new Position[numSubBoards];
+        // get the starting position on the first board
         // first board this will be the global start position
-        Position curStartPosition = start;
-        Position curEndPosition;
-        for (final Vertex nextVertex : boardPath) {
-            // iterate through the sub boards
-            // generate the appropriate positions on this board to enter
-            // from the previous board
-            // as well as positions to end on in order to move to next board
-            final Board nextBoard = (Board) nextVertex;
-            curEndPosition = computeLinkPosition(curBoard, nextBoard, curStartPosition, true);
-            //compute the longest path on this sub board from the entrance position to the exit position
-            final Path longestPathInSubBoard = curBoard.computeLongestPathBruteForce(curStartPosition, curEndPosition);
-            // add these positions to the longest path
-            longestPath.addAll(longestPathInSubBoard.getPath());
-            // compute the position that the next board will start at based on coming from
-            // the current board
-            curStartPosition = computeLinkPosition(curBoard, nextBoard, curStartPosition, false);
-            curBoard = nextBoard;
+        startPositions[0] = start;
+        for (int i = 0; i < numSubBoards; i++) {
+            subBoards[i] = (Board) boardPath.get(i);
+        }
+        for (int i = 0; i + 1 < numSubBoards; i++) {
+            // generate the appropriate positions on this board to end on in order to move to next board
+            // as well as the position that the next board will start at based on coming from this board
+            endPositions[i] = computeLinkPosition(subBoards[i], subBoards[i + 1], startPositions[i], true);
+            startPositions[i + 1] = computeLinkPosition(subBoards[i], subBoards[i + 1], startPositions[i], false);
         }
-
         // get the position within the sub board that end is.
-        curEndPosition = end;
-        final Path longestPathInEndSubBoard = curBoard.computeLongestPathBruteForce(curStartPosition, curEndPosition);
-        longestPath.addAll(longestPathInEndSubBoard.getPath());
-        return new Path(longestPath, longestPath.size() - 1);
+        endPositions[numSubBoards - 1] = end;
+
+        //compute the longest path on each sub board from the entrance position to the exit position
+        final LongestPathResult[] subBoardPaths = new LongestPathResult[numSubBoards];
+        final Exception[] errors = new Exception[numSubBoards];
+        pool.invoke(new SubBoardPathTask(subBoards, startPositions, endPositions, deadline, subBoardPaths, errors, 0, numSubBoards));
+
+        boolean hasMaxPathSize = boardPathResult.hasMaxPathSize();
+        boolean isComplete = boardPathResult.isComplete();
+        boolean isLinked = true;
+        int numCells = 0;
+        for (int i = 0; i < numSubBoards; i++) {
+            if (errors[i] != null) {
+                throw errors[i];
+            }
+            final LongestPathResult subBoardPath = subBoardPaths[i];
+            hasMaxPathSize &= subBoardPath.hasMaxPathSize();
+            isComplete &= subBoardPath.isComplete();
+            // a sub board with no path breaks the chain
+            isLinked &= !subBoardPath.getPath().getPath().isEmpty();
+            numCells += subBoardPath.getPath().size();
+        }
+        if (!isLinked) {
+            return new LongestPathResult(new Path(Lists.<Vertex>newArrayList(), -1), false, isComplete);
+        }
+        // longest path that will accumulate the longest paths of the sub boards on the board path, as cell indices
+        final int[] longestPath = new int[numCells];
+        int length = 0;
+        for (int i = 0; i < numSubBoards; i++) {
+            length = addCells(subBoardPaths[i].getPath(), longestPath, length);
+        }
+        return new LongestPathResult(new Path(getPositionIndex(), longestPath, length, length - 1), hasMaxPathSize, isComplete);
+    }
+
+    /**
+     * Appends the cell index of every position of the path, without creating the positions of a packed path.
+     *
+     * @param path  path of positions on this board.
+     * @param cells cell indices to append to.
+     * @param from  number of cells already in cells.
+     * @return number of cells in cells afterwards.
+     */
+    protected int addCells(final Path path, final int[] cells, int from) {
+        if (path.getIndex() instanceof PositionIndex) {
+            final PositionIndex index = (PositionIndex) path.getIndex();
+            for (int i = 0; i < path.size(); i++) {
+                final int id = path.getId(i);
+                cells[from++] = getCellIndex(index.baseRow + id / index.width, index.baseCol + id % index.width);
+            }
+        } else {
+            for (final Vertex v : path.getPath()) {
+                final Position p = (Position) v;
+                cells[from++] = getCellIndex(p.getR(), p.getC());
+            }
+        }
+        return from;
+    }
+
+    /**
+     * @return index of the positions of this board by cell index.
+     */
+    protected PositionIndex getPositionIndex() {
+        return new PositionIndex(getBasePosition(), width, height);
+    }
+
+    /**
+     * Computes the longest path of sub boards from the start board to the end board, which visits every sub board
+     * whenever there is such a path.
+     * <p/>
+     * Grids of up to {@link CompactGraph#MAX_SUBSET_SEARCH_VERTICES} sub boards are solved exactly by the subset
+     * search.  Larger grids are ordered by {@link SerpentineOrdering} without searching at all.  Only grids one or
+     * two boards across have start and end boards it can't order, because no order through every board exists,
+     * and those fall back to the pruned depth first search of the compact graph.
+     *
+     * @param graph    graph of the sub boards.
+     * @param rows     number of rows of sub boards.
+     * @param cols     number of columns of sub boards.
+     * @param deadline when to give up on the depth first search.
+     * @return longest path of sub boards.
+     */
+    protected LongestPathResult computeBoardPath(final Graph graph,
+                                                 final Board startBoard,
+                                                 final Board endBoard,
+                                                 final int rows,
+                                                 final int cols,
+                                                 final Deadline deadline) throws Exception {
+        final int numSubBoards = rows * cols;
+        if (numSubBoards <= CompactGraph.MAX_SUBSET_SEARCH_VERTICES) {
+            final Path path = graph.toCompactGraph().computeLongestPathBySubsets(startBoard, endBoard);
+            return new LongestPathResult(path, path.getPath().size() == numSubBoards, true);
+        }
+        final int[] order = SerpentineOrdering.compute(rows, cols,
+                startBoard.getBasePosition().getR() / SUB_BOARD_SIZE * cols + startBoard.getBasePosition().getC() / SUB_BOARD_SIZE,
+                endBoard.getBasePosition().getR() / SUB_BOARD_SIZE * cols + endBoard.getBasePosition().getC() / SUB_BOARD_SIZE);
+        if (order == null) {
+            return graph.toCompactGraph().computeLongestPath(startBoard, endBoard, numSubBoards, deadline);
+        }
+        final List<Vertex> boardPath = Lists.newArrayListWithCapacity(numSubBoards);
+        for (final int cell : order) {
+            boardPath.add(new Board(cell / cols * SUB_BOARD_SIZE, cell % cols * SUB_BOARD_SIZE, SUB_BOARD_SIZE, SUB_BOARD_SIZE));
+        }
+        return new LongestPathResult(new Path(boardPath, numSubBoards - 1), true, true);
+    }
+
+    /**
+     * Solves a range of sub boards on the board path, splitting it in half until each sub board has its own task.
+     */
+    private class SubBoardPathTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final Board[] subBoards;
+        final Position[] startPositions;
+        final Position[] endPositions;
+        final Deadline deadline;
+        final LongestPathResult[] paths;
+        final Exception[] errors;
+        final int from;
+        final int to;
+
+        SubBoardPathTask(final Board[] subBoards,
+                         final Position[] startPositions,
+                         final Position[] endPositions,
+                         final Deadline deadline,
+                         final LongestPathResult[] paths,
+                         final Exception[] errors,
+                         final int from,
+                         final int to) {
+            this.subBoards = subBoards;
+            this.startPositions = startPositions;
+            this.endPositions = endPositions;
+            this.deadline = deadline;
+            this.paths = paths;
+            this.errors = errors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                try {
+                    paths[from] = computeSubBoardPath(subBoards[from], startPositions[from], endPositions[from], deadline);
+                } catch (Exception e) {
+                    errors[from] = e;
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new SubBoardPathTask(subBoards, startPositions, endPositions, deadline, paths, errors, from, middle),
+                    new SubBoardPathTask(subBoards, startPositions, endPositions, deadline, paths, errors, middle, to));
+        }
+    }
+
+    /**
+     * Computes the longest path from start to end within a sub board.  Sub boards are blank, so a tour between
+     * link positions is looked up in the precomputed {@link TourLibrary} rather than searched for.
+     *
+     * @param subBoard sub board of this board.
+     * @param start    start position within the sub board.
+     * @param end      end position within the sub board.
+     * @param deadline when to give up searching and return the longest path found so far.
+     * @return Path containing sequence of positions to achieve the longest path.
+     */
+    protected LongestPathResult computeSubBoardPath(final Board subBoard,
+                                                    final Position start,
+                                                    final Position end,
+                                                    final Deadline deadline) throws Exception {
+        if (subBoard.width == SUB_BOARD_SIZE && subBoard.height == SUB_BOARD_SIZE) {
+            final byte[] tour = TourLibrary.getDefault().getTour(
+                    subBoard.getCellIndex(start.getR(), start.getC()),
+                    subBoard.getCellIndex(end.getR(), end.getC()));
+            if (tour != null) {
+                final int[] cells = new int[tour.length];
+                for (int i = 0; i < tour.length; i++) {
+                    cells[i] = tour[i];
+                }
+                return new LongestPathResult(new Path(subBoard.getPositionIndex(), cells, cells.length, cells.length - 1), true, true);
+            }
+        }
+        return subBoard.computeLongestPathBruteForce(start, end, deadline);
     }
 
     /**
@@ -406,13 +848,47 @@ public class Board implements Vertex {
      * @throws Exception
      */
     protected Path computeLongestPathBruteForce(final Position start, final Position end) throws Exception {
+        return computeLongestPathBruteForce(start, end, Deadline.none()).getPath();
+    }
+
+    /**
+     * Computes the longest path from start to end within this board, stopping once the deadline expires.
+     *
+     * @param start    start position.
+     * @param end      end position.
+     * @param deadline when to give up and return the longest path found so far.
+     * @return longest path found and whether the search ran to the end.
+     * @see #computeLongestPathBruteForce(Position, Position)
+     */
+    protected LongestPathResult computeLongestPathBruteForce(final Position start,
+                                                             final Position end,
+                                                             final Deadline deadline) throws Exception {
+        return computeLongestPathBruteForce(start, end, null, deadline);
+    }
+
+    /**
+     * Computes the longest path from start to end within this board, splitting the exhaustive part of the search
+     * over the pool.  Meant for boards that can't be split into 8x8 sub boards, such as irregular ones, where the
+     * whole board has to be searched at once.
+     *
+     * @param start    start position.
+     * @param end      end position.
+     * @param pool     pool to run the exhaustive search on, null to run it on the calling thread.
+     * @param deadline when to give up and return the longest path found so far.
+     * @return longest path found and whether the search ran to the end.
+     * @see CompactGraph#computeLongestPath(Vertex, Vertex, int, Deadline, ForkJoinPool)
+     */
+    protected LongestPathResult computeLongestPathBruteForce(final Position start,
+                                                             final Position end,
+                                                             final ForkJoinPool pool,
+                                                             final Deadline deadline) throws Exception {
         if (!isValidPosition(start)) {
             throw new Exception("The start position " + start + " is invalid.  Either off the board or starting on barrier or rock.");
         }
         if (!isValidPosition(end)) {
             throw new Exception("The end position " + end + " is invalid.  Either off the board or starting on barrier or rock.");
         }
-        Graph graph = generatePositionGraph();
+        final CompactGraph graph = getPositionGraph();
         boolean arePositionsSameColor = isPositionWhite(start) == isPositionWhite(end);
         // every move that is made changes the knights position to a different color (black or white)
         // if the final position is the same color this means the knight has to make an even number of moves to get there
@@ -420,7 +896,7 @@ public class Board implements Vertex {
         // thus the max number of possible moves is has to be odd and one less than the number of even squares
         boolean isNumberOfSquaresEven = width * height % 2 == 0;
         int maxPathSize = isNumberOfSquaresEven && arePositionsSameColor ? width * height - 1 : width * height;
-        return graph.computeLongestPath(start, end, maxPathSize);
+        return graph.computeLongestPath(start, end, maxPathSize, deadline, pool);
     }
 
     /**********************************
@@ -435,14 +911,257 @@ public class Board implements Vertex {
      * @returns Shortest Path from start to end.
      */
     public Path computeShortestPath(final Position start, final Position end) throws Exception {
+        return computeShortestPath(start, end, SearchMode.DIJKSTRA);
+    }
+
+    /**
+     * Algorithms for computing the shortest path between two positions.  All of them return a path of the same weight.
+     */
+    public static enum SearchMode {
+        /**
+         * Dijkstra's algorithm.  Explores outward from the start position in every direction.
+         */
+        DIJKSTRA,
+        /**
+         * A* search guided by the knight distance to the end position.  Explores far fewer positions on long
+         * queries across large boards.
+         */
+        A_STAR,
+        /**
+         * Dijkstra's algorithm run forward from the start and backward from the end until the searches meet.
+         * Explores roughly half the positions Dijkstra does.
+         */
+        BIDIRECTIONAL
+    }
+
+    /**
+     * Computes the shortest path between the start position and end position.
+     *
+     * @param start Start position.
+     * @param end   End position.
+     * @param mode  algorithm to search with.
+     * @returns Shortest Path from start to end.
+     */
+    public Path computeShortestPath(final Position start, final Position end, final SearchMode mode) throws Exception {
+        checkShortestPathPositions(start, end);
+        final CompactGraph graph = getPositionGraph();
+        final VertexIndex index = graph.getIndex();
+        final SearchContext context = searchContexts.acquire();
+        try {
+            switch (mode) {
+                case A_STAR:
+                    return graph.computeShortestPath(index.indexOf(start), index.indexOf(end), getKnightDistanceHeuristic(), context);
+                case BIDIRECTIONAL:
+                    final SearchContext backward = searchContexts.acquire();
+                    try {
+                        return graph.computeShortestPathBidirectional(index.indexOf(start), index.indexOf(end), context, backward);
+                    } finally {
+                        searchContexts.release(backward);
+                    }
+                default:
+                    return graph.computeShortestPath(index.indexOf(start), index.indexOf(end), context);
+            }
+        } finally {
+            searchContexts.release(context);
+        }
+    }
+
+    /**
+     * Computes the shortest path with Dijkstra's algorithm in the given scratch space.
+     *
+     * @param context scratch space with room for every position of this board.
+     * @see #computeShortestPath(Position, Position)
+     */
+    protected Path computeShortestPath(final Position start, final Position end, final SearchContext context) throws Exception {
+        checkShortestPathPositions(start, end);
+        final CompactGraph graph = getPositionGraph();
+        final VertexIndex index = graph.getIndex();
+        return graph.computeShortestPath(index.indexOf(start), index.indexOf(end), context);
+    }
+
+    /**
+     * @throws Exception if either position is off the board or on a barrier or rock.
+     */
+    protected void checkShortestPathPositions(final Position start, final Position end) throws Exception {
         if (!isValidPosition(start)) {
             throw new Exception("The start position is invalid.  Either off the board or starting on barrier or rock.");
         }
         if (!isValidPosition(end)) {
             throw new Exception("The end position is invalid.  Either off the board or starting on barrier or rock.");
         }
-        Graph graph = generatePositionGraph();
-        return graph.computeShortestPath(start, end);
+    }
+
+    /**
+     * Computes the shortest path of every query on the common fork join pool.
+     *
+     * @see #computeShortestPaths(List, ForkJoinPool)
+     */
+    public List<ShortestPathResult> computeShortestPaths(final List<ShortestPathQuery> queries) {
+        return computeShortestPaths(queries, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the shortest path of every query in parallel.  The position graph is built once and shared by
+     * every worker.  Search scratch space is pooled for the length of the call only: each run of queries on a worker
+     * takes a context and gives it back, at most one context per worker is kept between runs, and all of them are
+     * released once the call returns.
+     * <p/>
+     * A query with an invalid position does not stop the batch; its result holds the error instead.
+     *
+     * @param queries start and end positions to find shortest paths between.
+     * @param pool    pool to run the queries on.
+     * @return result of each query, in the same order as the queries.
+     */
+    public List<ShortestPathResult> computeShortestPaths(final List<ShortestPathQuery> queries, final ForkJoinPool pool) {
+        // build the graph up front rather than having the first workers wait on it.
+        getPositionGraph();
+        final ShortestPathQuery[] queryArray = queries.toArray(new ShortestPathQuery[queries.size()]);
+        final ShortestPathResult[] results = new ShortestPathResult[queryArray.length];
+        final SearchContextPool contexts = new SearchContextPool(width * height, pool.getParallelism());
+        pool.invoke(new ShortestPathTask(queryArray, results, contexts, 0, queryArray.length));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Splits a range of queries in half until it is small enough to run on one thread.
+     */
+    private class ShortestPathTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        /**
+         * Number of queries below which a task runs its queries rather than splitting further.
+         */
+        static final int THRESHOLD = 16;
+        final ShortestPathQuery[] queries;
+        final ShortestPathResult[] results;
+        /**
+         * Scratch space of the batch the task belongs to.
+         */
+        final SearchContextPool contexts;
+        final int from;
+        final int to;
+
+        ShortestPathTask(final ShortestPathQuery[] queries, final ShortestPathResult[] results,
+                         final SearchContextPool contexts, final int from, final int to) {
+            this.queries = queries;
+            this.results = results;
+            this.contexts = contexts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                final SearchContext context = contexts.acquire();
+                try {
+                    for (int i = from; i < to; i++) {
+                        final ShortestPathQuery query = queries[i];
+                        try {
+                            results[i] = new ShortestPathResult(query, computeShortestPath(query.getStart(), query.getEnd(), context), null);
+                        } catch (Exception e) {
+                            results[i] = new ShortestPathResult(query, null, e);
+                        }
+                    }
+                } finally {
+                    contexts.release(context);
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new ShortestPathTask(queries, results, contexts, from, middle),
+                    new ShortestPathTask(queries, results, contexts, middle, to));
+        }
+    }
+
+    /**
+     * Computes the shortest path from the source position to every position on the board in a single search.
+     * Use this instead of calling {@link #computeShortestPath(Position, Position)} many times from the same start.
+     *
+     * @param source Start position.
+     * @return distance and predecessor grid of the board, from which the shortest path to any position can be read.
+     */
+    public ShortestPathTree computeDistanceField(final Position source) throws Exception {
+        if (!isValidPosition(source)) {
+            throw new Exception("The source position is invalid.  Either off the board or starting on barrier or rock.");
+        }
+        return getPositionGraph().computeShortestPathTree(source);
+    }
+
+    /**
+     * @return admissible A* heuristic for this board, created on first use and then shared by every query.
+     */
+    protected Heuristic getKnightDistanceHeuristic() {
+        Heuristic heuristic = knightDistanceHeuristic;
+        if (heuristic == null) {
+            // threads racing here each build an equal heuristic, which is harmless.
+            heuristic = createKnightDistanceHeuristic();
+            knightDistanceHeuristic = heuristic;
+        }
+        return heuristic;
+    }
+
+    /**
+     * @return admissible A* heuristic for this board.
+     */
+    protected Heuristic createKnightDistanceHeuristic() {
+        // cheapest regular move is the cheapest cell a knight can land on.  Only the jump between two teleporters
+        // costs TELEPORTER_COST; landing on a teleporter with a regular move costs as much as a blank cell, so
+        // teleporters don't bring the bound down to 0.  The free jumps are accounted for by the heuristic itself.
+        double minMoveCost = LAVA_COST;
+        for (final byte type : terrain) {
+            if (type != ROCK && type != BARRIER) {
+                minMoveCost = Math.min(minMoveCost, computeLandingCost(type));
+            }
+        }
+        final Position[] teleporterPositions = new Position[teleporters.length];
+        for (int i = 0; i < teleporters.length; i++) {
+            teleporterPositions[i] = getPosition(teleporters[i]);
+        }
+        return new KnightDistanceHeuristic(minMoveCost, getPositionIndex(), teleporterPositions);
+    }
+
+    /**
+     * Returns the graph of knight movements on this board, generating it the first time it is needed.
+     * Safe to call from multiple threads; the graph is only generated once.
+     *
+     * @return Graph representing all possible moves a knight can make on the board.
+     * @see #generatePositionGraph()
+     */
+    protected CompactGraph getPositionGraph() {
+        CompactGraph graph = positionGraph;
+        if (graph == null) {
+            synchronized (this) {
+                graph = positionGraph;
+                if (graph == null) {
+                    graph = generatePositionGraph();
+                    positionGraph = graph;
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Writes the graph of knight movements on this board, so another process can load it with
+     * {@link #load(java.nio.file.Path, java.nio.file.Path)} instead of generating it.
+     *
+     * @param out stream to write to.  Not closed.
+     * @see GraphSnapshot
+     */
+    public void writePositionGraph(final OutputStream out) throws IOException {
+        GraphSnapshot.write(getPositionGraph(), computeChecksum(), out);
+    }
+
+    /**
+     * @return checksum of the base position, size and terrain of this board, which determine its position graph.
+     */
+    long computeChecksum() {
+        final CRC32 crc = new CRC32();
+        final ByteBuffer header = ByteBuffer.allocate(16);
+        header.putInt(basePosition.getR()).putInt(basePosition.getC()).putInt(width).putInt(height);
+        crc.update(header.array());
+        crc.update(terrain);
+        return crc.getValue();
     }
 
     /**
@@ -456,26 +1175,37 @@ public class Board implements Vertex {
      * <p/>
      * If a node contains a teleporter position, it will also have edges to all other teleporters.
      *
-     * @return Graph representing all possible moves a knight can make on the board.
+     * @return Graph representing all possible moves a knight can make on the board.  Vertex ids are the row major
+     * cell index of each position relative to the base position.
      */
-    protected Graph generatePositionGraph() {
-        final Graph graph = new Graph();
-        for (int r = 0; r < height; r++) {
-            for (int c = 0; c < width; c++) {
-                final Position position = getBasePosition().add(new Position(r, c));
-                if (!isValidPosition(position)) {
-                    // this is not a valid position (probably a rock or barrier)
-                    // and should not be included in our graph.
+    protected CompactGraph generatePositionGraph() {
+        final PositionIndex index = getPositionIndex();
+        final CompactGraph.Builder builder = new CompactGraph.Builder(index);
+        for (int cell = 0; cell < terrain.length; cell++) {
+            // rocks, barriers and cells without a legal move have an empty mask
+            final int mask = moveMasks[cell];
+            final boolean isTeleporter = terrain[cell] == TELEPORTER;
+            for (final Movement d : MOVEMENTS) {
+                if ((mask & (1 << d.ordinal())) == 0) {
+                    continue;
+                }
+                final int nextCell = cell + d.dRows * width + d.dColumns;
+                if (isTeleporter && terrain[nextCell] == TELEPORTER) {
+                    // reached by the teleporter edge below.
                     continue;
                 }
-                final Set<Position> nextPositions = generatePossibleKnightMoves(position);
-                for (final Position nextPosition : nextPositions) {
-                    final double cost = computeCostOfMove(position, nextPosition);
-                    graph.addEdge(position, nextPosition, cost);
+                builder.addEdge(cell, nextCell, computeLandingCost(terrain[nextCell]));
+            }
+            if (isTeleporter) {
+                // if this is a teleporter then the knight can move to all other teleporters.
+                for (final int teleporter : teleporters) {
+                    if (teleporter != cell) {
+                        builder.addEdge(cell, teleporter, TELEPORTER_COST);
+                    }
                 }
             }
         }
-        return graph;
+        return builder.build();
     }
 
     /**************************************
@@ -504,16 +1234,68 @@ public class Board implements Vertex {
         final int dRows;
         // whether this direction involves moving the rows first, or the
         final boolean moveRowsFirst;
+        /**
+         * Row and column offsets from the start of the cells {@link #doesMoveHitBarrier(int, int, Movement)} checks
+         * for barriers.
+         */
+        final int[] pathRows;
+        final int[] pathColumns;
 
         Movement(int dRows, int dColumns, boolean moveRowsFirst) {
             this.dColumns = dColumns;
             this.dRows = dRows;
             this.moveRowsFirst = moveRowsFirst;
+            final int firstMoveDistance = moveRowsFirst ? dRows : dColumns;
+            final int secondMoveDistance = moveRowsFirst ? dColumns : dRows;
+            pathRows = new int[Math.abs(firstMoveDistance) + Math.abs(secondMoveDistance)];
+            pathColumns = new int[pathRows.length];
+            int i = 0;
+            for (int step = 1; step <= Math.abs(firstMoveDistance); step++, i++) {
+                final int distance = Integer.signum(firstMoveDistance) * step;
+                pathRows[i] = moveRowsFirst ? distance : 0;
+                pathColumns[i] = moveRowsFirst ? 0 : distance;
+            }
+            for (int step = 1; step <= Math.abs(secondMoveDistance); step++, i++) {
+                final int distance = Integer.signum(secondMoveDistance) * step;
+                pathRows[i] = moveRowsFirst ? 0 : distance;
+                pathColumns[i] = moveRowsFirst ? distance : 0;
+            }
+        }
+    }
+
+    /**
+     * All movements, in ordinal order.  Cached since values() copies the array.
+     */
+    final static Movement[] MOVEMENTS = Movement.values();
+    /**
+     * Movement for each (dRow, dCol) in [-2, 2] x [-2, 2], null where the offset isn't a knight's move.
+     */
+    final static Movement[] MOVEMENT_BY_OFFSET = new Movement[25];
+
+    static {
+        for (final Movement m : MOVEMENTS) {
+            MOVEMENT_BY_OFFSET[(m.dRows + LONG_MOVE_DISTANCE) * 5 + m.dColumns + LONG_MOVE_DISTANCE] = m;
         }
     }
 
+    /**
+     * @param dRow change in rows.
+     * @param dCol change in columns.
+     * @return the movement with this change in rows and columns, or null if it isn't a knight's move.
+     */
+    protected static Movement getMovement(final int dRow, final int dCol) {
+        if (Math.abs(dRow) > LONG_MOVE_DISTANCE || Math.abs(dCol) > LONG_MOVE_DISTANCE) {
+            return null;
+        }
+        return MOVEMENT_BY_OFFSET[(dRow + LONG_MOVE_DISTANCE) * 5 + dCol + LONG_MOVE_DISTANCE];
+    }
+
     /**
      * Determines whether the input list of positions is a valid set of moves for a knight.
+     * <p/>
+     * Only moves are checked, so an empty list or a list of a single position is always valid, even if the
+     * position is off the board or on a rock.  Use {@link #findInvalidPosition(Iterator, boolean)} to check the
+     * positions themselves.
      *
      * @param moves      list of moves.
      * @param printMoves if true the moves on the board will printed to be standard out.
@@ -524,14 +1306,8 @@ public class Board implements Vertex {
             // no move is a valid move
             return true;
         }
-
-        Position cur = moves.get(0);
-        for (int i = 1; i < moves.size(); i++) {
-            final Position next = moves.get(i);
-            if (!isValidMove(cur, next)) {
-                return false;
-            }
-            cur = next;
+        if (moves.size() > 1 && findInvalidPosition(moves.iterator(), false) >= 0) {
+            return false;
         }
         if (printMoves) {
             printKnightsPathOnBoard(moves);
@@ -544,13 +1320,61 @@ public class Board implements Vertex {
      *
      * @param path path
      * @return true if the list of moves are possible by a single knight. false otherwise.
+     * @see #isValidSetOfMoves(List, boolean)
      */
     public boolean isValidSetOfMoves(final Path path, boolean printPath) {
-        final List<Position> moves = Lists.newArrayList();
-        for (Vertex v : path.getPath()) {
-            moves.add((Position) v);
+        if (path.size() == 0) {
+            // no move is a valid move
+            return true;
+        }
+        final Iterator<Position> moves = Iterators.transform(path.getPath().iterator(), new Function<Vertex, Position>() {
+            @Override
+            public Position apply(final Vertex v) {
+                return (Position) v;
+            }
+        });
+        if (path.size() > 1 && findInvalidPosition(moves, false) >= 0) {
+            return false;
+        }
+        if (printPath) {
+            printKnightsPathOnBoard(Lists.newArrayList(Iterators.filter(path.getPath().iterator(), Position.class)));
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first position of a path a knight can't move along.  The positions are checked as they are read,
+     * so a path of millions of moves can be checked in memory proportional to the board.
+     *
+     * @param moves            positions of the path in order.
+     * @param isRevisitInvalid if true a position the path has already visited is invalid.
+     * @return index of the first position that is off the board, on a rock or barrier, not a knight's move or
+     * teleport from the position before, or a revisit.  -1 if the whole path is valid.
+     */
+    public long findInvalidPosition(final Iterator<Position> moves, final boolean isRevisitInvalid) {
+        final PathValidator validator = new PathValidator(this, isRevisitInvalid);
+        while (moves.hasNext()) {
+            final Position p = moves.next();
+            if (!validator.add(p.getR(), p.getC())) {
+                return validator.numPositions;
+            }
         }
-        return isValidSetOfMoves(moves, printPath);
+        return -1;
+    }
+
+    /**
+     * Finds the first invalid position of a path read from a stream, such as a file, without holding the path in
+     * memory.
+     *
+     * @param in               stream of the positions of the path as pairs of integers row then column, separated
+     *                         by anything other than digits and minus signs.  Not closed.
+     * @param isRevisitInvalid if true a position the path has already visited is invalid.
+     * @return index of the first invalid position, -1 if the whole path is valid.
+     * @throws IOException if the stream can't be read or ends part way through a position.
+     * @see #findInvalidPosition(Iterator, boolean)
+     */
+    public long findInvalidPosition(final InputStream in, final boolean isRevisitInvalid) throws IOException {
+        return new PathValidator(this, isRevisitInvalid).findInvalidPosition(in);
     }
 
     /**
@@ -581,28 +1405,24 @@ public class Board implements Vertex {
      * @return
      */
     protected boolean isValidMove(final Position start, final Position end) {
-        if (teleporters.contains(start) && teleporters.contains(end)) {
+        final int cell = getCellIndex(start.getR(), start.getC());
+        final int nextCell = getCellIndex(end.getR(), end.getC());
+        return cell >= 0 && nextCell >= 0 && isValidMove(cell, nextCell);
+    }
+
+    /**
+     * @param cell     cell index of the start.
+     * @param nextCell cell index of the end.
+     * @see #isValidMove(Position, Position)
+     */
+    protected boolean isValidMove(final int cell, final int nextCell) {
+        if (terrain[cell] == TELEPORTER && terrain[nextCell] == TELEPORTER) {
             // if you are moving from a teleporter to another teleporter this is a valid move.
             return true;
         }
-        int dRow = end.getR() - start.getR();
-        int dCol = end.getC() - start.getC();
-        // true if the pure movement is in the L shape.
-        Movement movement = null;
-        for (Movement m : Movement.values()) {
-            if (m.dRows == dRow && m.dColumns == dCol) {
-                movement = m;
-                break;
-            }
-        }
-        if (movement == null) {
-            return false;
-        }
-
-        boolean moveHitsBarrier = doesMoveHitBarrier(start, movement);
-        boolean isValidStartPosition = isValidPosition(start);
-        boolean isValidEndPosition = isValidPosition(end);
-        return !moveHitsBarrier && isValidEndPosition && isValidStartPosition;
+        // null unless the pure movement is in the L shape.
+        final Movement movement = getMovement(nextCell / width - cell / width, nextCell % width - cell % width);
+        return movement != null && (moveMasks[cell] & (1 << movement.ordinal())) != 0;
     }
 
     /**
@@ -624,17 +1444,20 @@ public class Board implements Vertex {
      */
     protected Set generatePossibleKnightMoves(final Position p) {
         final Set possibleMoves = Sets.newHashSet();
-        for (Movement d : Movement.values()) {
-            final Position possiblePosition = moveDirection(p, d);
-            if (isValidMove(p, possiblePosition)) {
+        final int cell = getCellIndex(p.getR(), p.getC());
+        final int mask = cell < 0 ? 0 : moveMasks[cell];
+        for (Movement d : MOVEMENTS) {
+            if ((mask & (1 << d.ordinal())) != 0) {
                 // only keep this move if it is valid
-                possibleMoves.add(possiblePosition);
+                possibleMoves.add(moveDirection(p, d));
             }
         }
 
-        if (teleporters.contains(p)) {
+        if (isTeleporter(p.getR(), p.getC())) {
             // if p a teleporter then the knight can move to all other teleporters.
-            possibleMoves.addAll(teleporters);
+            for (final int teleporter : teleporters) {
+                possibleMoves.add(getPosition(teleporter));
+            }
         }
         return possibleMoves;
     }
@@ -658,28 +1481,36 @@ public class Board implements Vertex {
      * @return true if move hits a barrier.
      */
     protected boolean doesMoveHitBarrier(final Position start, final Movement d) {
-        // positions that are in the path of this L movement
-        final Set<Position> positionPath = Sets.newHashSet();
+        return doesMoveHitBarrier(start.getR(), start.getC(), d);
+    }
 
-        //TODO(blakec) decompose this as it is repeated below... coming up with a name for this is hard, though
+    /**
+     * Checks if the move from the start cell in given direction moves through a barrier
+     *
+     * @see #doesMoveHitBarrier(Position, Movement)
+     */
+    protected boolean doesMoveHitBarrier(final int startRow, final int startCol, final Movement d) {
+        // walk the cells that are in the path of this L movement
         final int firstMoveDistance = d.moveRowsFirst ? d.dRows : d.dColumns;
         final int firstMoveSign = firstMoveDistance >= 0 ? 1 : -1;
         for (int i = 1; i <= Math.abs(firstMoveDistance); i++) {
-            int r = d.moveRowsFirst ? start.getR() + firstMoveSign * i : start.getR();
-            int c = d.moveRowsFirst ? start.getC() : start.getC() + firstMoveSign * i;
-            final Position newPos = new Position(r, c);
-            positionPath.add(newPos);
+            int r = d.moveRowsFirst ? startRow + firstMoveSign * i : startRow;
+            int c = d.moveRowsFirst ? startCol : startCol + firstMoveSign * i;
+            if (getTerrain(r, c) == BARRIER) {
+                return true;
+            }
         }
 
         final int secondMoveDistance = d.moveRowsFirst ? d.dColumns : d.dRows;
         final int secondMoveSign = secondMoveDistance >= 0 ? 1 : -1;
         for (int i = 1; i <= Math.abs(secondMoveDistance); i++) {
-            int r = d.moveRowsFirst ? start.getR() : start.getR() + i * secondMoveSign;
-            int c = d.moveRowsFirst ? start.getC() + i * secondMoveSign : start.getC();
-            final Position newPos = new Position(r, c);
-            positionPath.add(newPos);
+            int r = d.moveRowsFirst ? startRow : startRow + i * secondMoveSign;
+            int c = d.moveRowsFirst ? startCol + i * secondMoveSign : startCol;
+            if (getTerrain(r, c) == BARRIER) {
+                return true;
+            }
         }
-        return !Sets.intersection(barriers, positionPath).isEmpty();
+        return false;
     }
 
     /**
@@ -689,19 +1520,32 @@ public class Board implements Vertex {
      * @return true if the position is valid, false otherwise.
      */
     protected boolean isValidPosition(final Position p) {
-        if (p.getC() < getBasePosition().getC() || p.getC() >= getBasePosition().getC() + width) {
-            return false;
-        }
-        if (p.getR() < getBasePosition().getR() || p.getR() >= getBasePosition().getR() + height) {
-            return false;
-        }
-        if (barriers.contains(p)) {
-            return false;
-        }
-        if (rocks.contains(p)) {
+        return isValidPosition(p.getR(), p.getC());
+    }
+
+    /**
+     * Checks if the cell is on the board and isn't on top of a rock or barrier.
+     *
+     * @param r row on the board.
+     * @param c column on the board.
+     * @return true if the position is valid, false otherwise.
+     */
+    protected boolean isValidPosition(final int r, final int c) {
+        final int cell = getCellIndex(r, c);
+        if (cell < 0) {
             return false;
         }
-        return true;
+        final byte type = terrain[cell];
+        return type != BARRIER && type != ROCK;
+    }
+
+    /**
+     * @param r row on the board.
+     * @param c column on the board.
+     * @return true if the cell is on the board and holds a teleporter.
+     */
+    protected boolean isTeleporter(final int r, final int c) {
+        return getTerrain(r, c) == TELEPORTER;
     }
 
     /**
@@ -713,18 +1557,90 @@ public class Board implements Vertex {
      * @return
      */
     protected double computeCostOfMove(final Position start, final Position end) {
-        if (teleporters.contains(start) && teleporters.contains(end)) {
+        return computeCostOfMove(start.getR(), start.getC(), end.getR(), end.getC());
+    }
+
+    /**
+     * Calculates the cost of moving from the start cell to the end cell.
+     *
+     * @see #computeCostOfMove(Position, Position)
+     */
+    protected double computeCostOfMove(final int startRow, final int startCol, final int endRow, final int endCol) {
+        final byte endType = getTerrain(endRow, endCol);
+        if (endType == TELEPORTER && isTeleporter(startRow, startCol)) {
             return TELEPORTER_COST;
         }
-        if (lava.contains(end)) {
+        return computeLandingCost(endType);
+    }
+
+    /**
+     * @param endType terrain code of the cell a knight jumps onto.
+     * @return cost of landing on the cell with a regular knight's move.
+     */
+    static double computeLandingCost(final byte endType) {
+        if (endType == LAVA) {
             return LAVA_COST;
         }
-        if (water.contains(end)) {
+        if (endType == WATER) {
             return WATER_COST;
         }
         return DEFAULT_COST;
     }
 
+    /**
+     * @param r row on the board.
+     * @param c column on the board.
+     * @return row major index of the cell relative to the base position, or -1 if it is off the board.
+     */
+    protected int getCellIndex(final int r, final int c) {
+        final int localRow = r - basePosition.getR();
+        final int localCol = c - basePosition.getC();
+        if (localRow < 0 || localRow >= height || localCol < 0 || localCol >= width) {
+            return -1;
+        }
+        return localRow * width + localCol;
+    }
+
+    /**
+     * @param cell row major index of the cell relative to the base position.
+     * @return position of the cell.
+     */
+    protected Position getPosition(final int cell) {
+        return new Position(basePosition.getR() + cell / width, basePosition.getC() + cell % width);
+    }
+
+    /**
+     * @param r row on the board.
+     * @param c column on the board.
+     * @return terrain code of the cell.  Cells off the board are blank.
+     */
+    protected byte getTerrain(final int r, final int c) {
+        final int cell = getCellIndex(r, c);
+        return cell < 0 ? BLANK : terrain[cell];
+    }
+
+    /**
+     * @return terrain code of each cell in row major order.  Not a copy, so must not be modified.
+     */
+    byte[] getTerrainCodes() {
+        return terrain;
+    }
+
+    /**
+     * @return legal move mask of each cell in row major order.  Not a copy, so must not be modified.
+     */
+    byte[] getMoveMasks() {
+        return moveMasks;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
     /**
      * Returns the base position of this board.
      *
@@ -775,14 +1691,16 @@ public class Board implements Vertex {
      * @return character representing position type.
      */
     protected char getPositionType(final Position p) {
-        for (Map.Entry<Character, Set<Position>> entry : characterToSpecialPosition.entrySet()) {
-            final Character positionType = entry.getKey();
-            final Set<Position> positions = entry.getValue();
-            if (positions.contains(p)) {
-                return positionType;
-            }
-        }
-        return DEFAULT_CHAR;
+        return getPositionType(p.getR(), p.getC());
+    }
+
+    /**
+     * @param r row on the board.
+     * @param c column on the board.
+     * @return character representing position type.
+     */
+    protected char getPositionType(final int r, final int c) {
+        return TERRAIN_CHARS[getTerrain(r, c)];
     }
 
     @Override
@@ -794,12 +1712,8 @@ public class Board implements Vertex {
 
         if (height != that.height) return false;
         if (width != that.width) return false;
-        if (barriers != null ? !barriers.equals(that.barriers) : that.barriers != null) return false;
         if (basePosition != null ? !basePosition.equals(that.basePosition) : that.basePosition != null) return false;
-        if (lava != null ? !lava.equals(that.lava) : that.lava != null) return false;
-        if (rocks != null ? !rocks.equals(that.rocks) : that.rocks != null) return false;
-        if (teleporters != null ? !teleporters.equals(that.teleporters) : that.teleporters != null) return false;
-        if (water != null ? !water.equals(that.water) : that.water != null) return false;
+        if (!Arrays.equals(terrain, that.terrain)) return false;
 
         return true;
     }
@@ -809,11 +1723,7 @@ public class Board implements Vertex {
         int result = basePosition != null ? basePosition.hashCode() : 0;
         result = 31 * result + width;
         result = 31 * result + height;
-        result = 31 * result + (teleporters != null ? teleporters.hashCode() : 0);
-        result = 31 * result + (lava != null ? lava.hashCode() : 0);
-        result = 31 * result + (rocks != null ? rocks.hashCode() : 0);
-        result = 31 * result + (barriers != null ? barriers.hashCode() : 0);
-        result = 31 * result + (water != null ? water.hashCode() : 0);
+        result = 31 * result + Arrays.hashCode(terrain);
         return result;
     }
 
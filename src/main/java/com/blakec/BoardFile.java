@@ -0,0 +1,167 @@
+package com.blakec;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Binary format of a board, much smaller and faster to load than its text.
+ * <p/>
+ * Format, big endian: magic int, version short, flags byte, width int, height int, then the terrain codes of the
+ * cells in row major order, run length encoded.  No flags are defined yet, so the flags byte is 0.
+ * <p/>
+ * The legal move masks of the cells aren't stored.  They follow from the terrain, and masks read from a file could
+ * disagree with it and let a knight through a barrier, so they are always computed on load.
+ * <p/>
+ * Each run is the code byte followed by the length of the run as an unsigned varint: 7 bits per byte, low bits
+ * first, with the high bit set on every byte but the last.
+ */
+class BoardFile {
+    static final int MAGIC = 0x4b425244;
+    static final short VERSION = 1;
+
+    /**
+     * Writes the board.
+     *
+     * @param board  board to write.
+     * @param output stream to write to.  Flushed but not closed.
+     */
+    static void write(final Board board, final OutputStream output) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeByte(0);
+        out.writeInt(board.getWidth());
+        out.writeInt(board.getHeight());
+        writeRuns(board.getTerrainCodes(), out);
+        out.flush();
+    }
+
+    static void writeRuns(final byte[] codes, final DataOutputStream out) throws IOException {
+        int start = 0;
+        while (start < codes.length) {
+            int end = start + 1;
+            while (end < codes.length && codes[end] == codes[start]) {
+                end++;
+            }
+            out.writeByte(codes[start]);
+            int length = end - start;
+            while (length >= 0x80) {
+                out.writeByte(length & 0x7f | 0x80);
+                length >>>= 7;
+            }
+            out.writeByte(length);
+            start = end;
+        }
+    }
+
+    /**
+     * Reads a board, all of the stream in a single read.  The stream is not closed.
+     */
+    static Board read(final InputStream in) throws IOException {
+        return read(ByteBuffer.wrap(ByteStreams.toByteArray(in)));
+    }
+
+    /**
+     * Reads a board from a file by memory mapping it.
+     */
+    static Board read(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Board file " + file + " is larger than 2GB.");
+            }
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            channel.close();
+        }
+    }
+
+    static Board read(final ByteBuffer in) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a board file.");
+            }
+            final short version = in.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported board file version " + version + ".");
+            }
+            final int flags = in.get();
+            if (flags != 0) {
+                throw new IOException("Board file has unknown flags " + flags + ".");
+            }
+            final int width = in.getInt();
+            final int height = in.getInt();
+            if (width <= 0 || height <= 0 || (long) width * height > BoardReader.MAX_CELLS) {
+                throw new IOException("Board file has invalid dimensions " + width + "x" + height + ".");
+            }
+            final byte[] terrain = new byte[width * height];
+            readRuns(in, terrain);
+            int numTeleporters = 0;
+            for (final byte type : terrain) {
+                if (type < 0 || type >= Board.TERRAIN_CHARS.length) {
+                    throw new IOException("Board file has unknown terrain code " + type + ".");
+                }
+                if (type == Board.TELEPORTER) {
+                    numTeleporters++;
+                }
+            }
+            return new Board(width, height, terrain, numTeleporters);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Board file is truncated.");
+        }
+    }
+
+    static void readRuns(final ByteBuffer in, final byte[] codes) throws IOException {
+        int start = 0;
+        while (start < codes.length) {
+            final byte code = in.get();
+            int length = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.get();
+                if (shift > 28) {
+                    throw new IOException("Board file has an invalid run length.");
+                }
+                length |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            if (length <= 0 || length > codes.length - start) {
+                throw new IOException("Board file has runs past the end of the board.");
+            }
+            if (code != 0) {
+                Arrays.fill(codes, start, start + length, code);
+            }
+            start += length;
+        }
+    }
+
+    /**
+     * Converts a text board to the binary format.
+     *
+     * @param args path of the text board to read and path of the binary board to write.
+     */
+    public static void main(final String[] args) throws Exception {
+        final Board board = Board.load(Paths.get(args[0]));
+        final OutputStream out = new FileOutputStream(args[1]);
+        try {
+            write(board, out);
+        } finally {
+            out.close();
+        }
+        System.out.println("Wrote " + board.getWidth() + "x" + board.getHeight() + " board to " + args[1]);
+    }
+}
@@ -0,0 +1,171 @@
+package com.blakec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Parses the character grid of a board in a single pass, writing each cell's terrain code straight into the
+ * terrain array of the board.
+ * <p/>
+ * Spaces and carriage returns are skipped, each newline ends a row.  Every row must have as many cells as the
+ * first, and empty lines are only allowed at the end.  Large files are memory mapped rather than read into a
+ * string, so loading a board takes no more memory than its terrain.
+ */
+class BoardReader {
+    static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Largest number of cells a board can have, the largest array most JVMs will allocate.
+     */
+    static final int MAX_CELLS = Integer.MAX_VALUE - 8;
+
+    /**
+     * Size of the input in characters, used to size the terrain once the width is known.
+     */
+    final long inputSize;
+    byte[] terrain;
+    int numCells = 0;
+    /**
+     * Number of cells in each row, -1 until the first row ends.
+     */
+    int width = -1;
+    int height = 0;
+    int numTeleporters = 0;
+    /**
+     * Number of cells read of the row being read.
+     */
+    int col = 0;
+    /**
+     * Number of empty lines since the last row.
+     */
+    int numEmptyLines = 0;
+
+    BoardReader(final long inputSize) {
+        this.inputSize = inputSize;
+        terrain = new byte[(int) Math.max(16, Math.min(inputSize, MAX_CELLS))];
+    }
+
+    /**
+     * @param board board represented by a grid of '.', 'W', 'R', 'B', 'T' characters.
+     * @return reader holding the parsed board.
+     * @throws IOException if the board has no rows or rows of unequal lengths.
+     */
+    static BoardReader read(final String board) throws IOException {
+        final BoardReader reader = new BoardReader(board.length());
+        for (int i = 0; i < board.length(); i++) {
+            reader.accept(board.charAt(i));
+        }
+        return reader.finish();
+    }
+
+    /**
+     * Reads the board from the stream until it ends.  The stream is not closed.
+     *
+     * @see #read(String)
+     */
+    static BoardReader read(final InputStream in) throws IOException {
+        final BoardReader reader = new BoardReader(BUFFER_SIZE);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int numRead;
+        while ((numRead = in.read(buffer)) >= 0) {
+            for (int i = 0; i < numRead; i++) {
+                reader.accept(buffer[i]);
+            }
+        }
+        return reader.finish();
+    }
+
+    /**
+     * Reads the board from a file by memory mapping it.
+     *
+     * @see #read(String)
+     */
+    static BoardReader read(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            final BoardReader reader = new BoardReader(size);
+            // a single mapping can't be larger than 2GB.
+            for (long offset = 0; offset < size; offset += Integer.MAX_VALUE) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(Integer.MAX_VALUE, size - offset));
+                while (buffer.hasRemaining()) {
+                    reader.accept(buffer.get());
+                }
+            }
+            return reader.finish();
+        } finally {
+            channel.close();
+        }
+    }
+
+    void accept(final int ch) throws IOException {
+        switch (ch) {
+            case ' ':
+            case '\r':
+                return;
+            case '\n':
+                endRow();
+                return;
+            default:
+                if (numEmptyLines > 0 || col == width) {
+                    throw new IOException("The input string has rows with unequal lengths.");
+                }
+                if (numCells == terrain.length) {
+                    grow();
+                }
+                final byte type = Board.terrainOf((char) (ch & 0xff));
+                terrain[numCells++] = type;
+                if (type == Board.TELEPORTER) {
+                    numTeleporters++;
+                }
+                col++;
+        }
+    }
+
+    void endRow() throws IOException {
+        if (col == 0) {
+            numEmptyLines++;
+            return;
+        }
+        if (width < 0) {
+            width = col;
+            // every other row takes at least width + 1 characters, so this is usually the exact size.
+            final long numRows = (inputSize + 1) / (width + 1);
+            final long capacity = Math.min(MAX_CELLS, Math.max(numRows, 1) * width);
+            if (capacity > numCells) {
+                terrain = Arrays.copyOf(terrain, (int) capacity);
+            }
+        } else if (col != width) {
+            throw new IOException("The input string has rows with unequal lengths.");
+        }
+        height++;
+        col = 0;
+    }
+
+    void grow() throws IOException {
+        if (terrain.length == MAX_CELLS) {
+            throw new IOException("The board has more than " + MAX_CELLS + " cells.");
+        }
+        terrain = Arrays.copyOf(terrain, (int) Math.min(MAX_CELLS, 2L * terrain.length));
+    }
+
+    /**
+     * Ends the last row and trims the terrain to the number of cells read.
+     */
+    BoardReader finish() throws IOException {
+        if (col > 0) {
+            endRow();
+        }
+        if (height == 0) {
+            throw new IOException("The board cannot have 0 rows.");
+        }
+        if (terrain.length != numCells) {
+            terrain = Arrays.copyOf(terrain, numCells);
+        }
+        return this;
+    }
+}
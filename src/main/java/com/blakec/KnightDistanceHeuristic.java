@@ -0,0 +1,74 @@
+package com.blakec;
+
+import com.blakec.graph.Heuristic;
+import com.blakec.graph.Vertex;
+
+/**
+ * A* heuristic for a board's position graph.
+ * <p/>
+ * Every regular move costs at least the cheapest landing cost on the board, and a knight needs at least its
+ * unobstructed knight distance in moves, so their product never overestimates.  The only free move is the jump
+ * between two teleporters, which is a separate term: walking to the nearest teleporter, jumping for free and
+ * leaving from the teleporter nearest the target.  The estimate is the smaller of the two.
+ * <p/>
+ * Created once per board and shared by every query on it.
+ */
+class KnightDistanceHeuristic implements Heuristic {
+    /**
+     * Cheapest cost of a regular knight's move on the board.
+     */
+    final double minMoveCost;
+    /**
+     * Index of the board's positions, used to turn vertex ids back into rows and columns.
+     */
+    final PositionIndex index;
+    /**
+     * Rows and columns of the teleporters on the board.  Empty unless there are at least two, since a single
+     * teleporter can't be used.
+     */
+    final int[] teleporterRows;
+    final int[] teleporterCols;
+
+    KnightDistanceHeuristic(final double minMoveCost, final PositionIndex index, final Position[] teleporters) {
+        this.minMoveCost = minMoveCost;
+        this.index = index;
+        final int numTeleporters = teleporters.length > 1 ? teleporters.length : 0;
+        this.teleporterRows = new int[numTeleporters];
+        this.teleporterCols = new int[numTeleporters];
+        for (int i = 0; i < numTeleporters; i++) {
+            teleporterRows[i] = teleporters[i].getR();
+            teleporterCols[i] = teleporters[i].getC();
+        }
+    }
+
+    @Override
+    public double estimate(final Vertex from, final Vertex target) {
+        final Position f = (Position) from;
+        final Position t = (Position) target;
+        return estimate(f.getR(), f.getC(), t.getR(), t.getC());
+    }
+
+    @Override
+    public double estimate(final int from, final int target) {
+        // same arithmetic as PositionIndex.vertexAt, without allocating a position per reached vertex.
+        final int width = index.width;
+        return estimate(index.baseRow + from / width, index.baseCol + from % width,
+                index.baseRow + target / width, index.baseCol + target % width);
+    }
+
+    double estimate(final int fromRow, final int fromCol, final int targetRow, final int targetCol) {
+        int moves = Position.knightDistance(targetRow - fromRow, targetCol - fromCol);
+        if (teleporterRows.length > 0) {
+            int movesToTeleporter = Integer.MAX_VALUE;
+            int movesFromTeleporter = Integer.MAX_VALUE;
+            for (int i = 0; i < teleporterRows.length; i++) {
+                movesToTeleporter = Math.min(movesToTeleporter,
+                        Position.knightDistance(teleporterRows[i] - fromRow, teleporterCols[i] - fromCol));
+                movesFromTeleporter = Math.min(movesFromTeleporter,
+                        Position.knightDistance(targetRow - teleporterRows[i], targetCol - teleporterCols[i]));
+            }
+            moves = Math.min(moves, movesToTeleporter + movesFromTeleporter);
+        }
+        return moves * minMoveCost;
+    }
+}
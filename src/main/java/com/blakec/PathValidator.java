@@ -0,0 +1,117 @@
+package com.blakec;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Checks a path of a knight one position at a time, so a path of any length can be checked without holding it in
+ * memory.
+ * <p/>
+ * Each move is checked against the legal move mask of the cell it starts on, found from the offset of the move by
+ * table lookup.  Optionally revisits are invalid too, tracked in a bit set with a bit per cell of the board, which
+ * is the only memory used.
+ */
+class PathValidator {
+    final Board board;
+    /**
+     * Bit per cell of the board, set once the path has visited the cell.  null if revisits are allowed.
+     */
+    final long[] visited;
+    /**
+     * Cell the path is on, -1 before the first position.
+     */
+    int cell = -1;
+    /**
+     * Number of valid positions added so far, which is the index of the next position.
+     */
+    long numPositions = 0;
+
+    PathValidator(final Board board, final boolean isRevisitInvalid) {
+        this.board = board;
+        this.visited = isRevisitInvalid ? new long[(board.getWidth() * board.getHeight() + 63) >>> 6] : null;
+    }
+
+    /**
+     * Moves along the path to the next position.
+     *
+     * @param r row of the next position.
+     * @param c column of the next position.
+     * @return false if the position can't follow the path so far, in which case the path is left as it was.
+     */
+    boolean add(final int r, final int c) {
+        final int next = board.getCellIndex(r, c);
+        if (next < 0 || !board.isValidPosition(r, c)) {
+            return false;
+        }
+        if (cell >= 0 && !board.isValidMove(cell, next)) {
+            return false;
+        }
+        if (visited != null) {
+            if ((visited[next >>> 6] & 1L << next) != 0) {
+                return false;
+            }
+            visited[next >>> 6] |= 1L << next;
+        }
+        cell = next;
+        numPositions++;
+        return true;
+    }
+
+    /**
+     * Checks the path of positions in the stream, given as pairs of integers row then column.  Anything other than
+     * digits and minus signs separates the integers, so "3 4", "3,4" and "(3, 4)" on a line are all read the same.
+     *
+     * @param in stream of positions.  Read to the end of the path or the first invalid position, not closed.
+     * @return index of the first invalid position, -1 if the whole path is valid.
+     * @throws IOException if the stream ends part way through a position.
+     */
+    long findInvalidPosition(final InputStream in) throws IOException {
+        final byte[] buffer = new byte[BoardReader.BUFFER_SIZE];
+        // the row of the position being read once hasRow is set, and the integer being read.
+        int row = 0;
+        boolean hasRow = false;
+        long value = 0;
+        boolean isNegative = false;
+        boolean hasDigits = false;
+        int numRead;
+        while ((numRead = in.read(buffer)) >= 0) {
+            for (int i = 0; i < numRead; i++) {
+                final int ch = buffer[i];
+                if (ch >= '0' && ch <= '9') {
+                    value = value * 10 + ch - '0';
+                    hasDigits = true;
+                    if (value > Integer.MAX_VALUE) {
+                        // far off any board.
+                        return numPositions;
+                    }
+                    continue;
+                }
+                if (hasDigits) {
+                    final int n = (int) (isNegative ? -value : value);
+                    if (!hasRow) {
+                        row = n;
+                        hasRow = true;
+                    } else {
+                        if (!add(row, n)) {
+                            return numPositions;
+                        }
+                        hasRow = false;
+                    }
+                    value = 0;
+                    hasDigits = false;
+                }
+                isNegative = ch == '-';
+            }
+        }
+        if (hasDigits) {
+            if (!hasRow) {
+                throw new IOException("The path ends with a row and no column.");
+            }
+            return add(row, (int) (isNegative ? -value : value)) ? -1 : numPositions;
+        }
+        if (hasRow) {
+            throw new IOException("The path ends with a row and no column.");
+        }
+        return -1;
+    }
+}
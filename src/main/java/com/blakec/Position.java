@@ -42,6 +42,45 @@ public class Position implements Vertex {
         return new Position(r + p.getR(), c + p.getC());
     }
 
+    /**
+     * Number of moves a knight needs to get from this position to the other on an unbounded board with no
+     * obstacles.  Edges and obstacles can only make the trip longer so this is a lower bound on any board.
+     *
+     * @param p other position.
+     * @return fewest knight moves between the two positions.
+     */
+    public int knightDistanceTo(final Position p) {
+        return knightDistance(p.getR() - r, p.getC() - c);
+    }
+
+    /**
+     * @param dr difference in rows.
+     * @param dc difference in columns.
+     * @return fewest knight moves spanning the difference on an unbounded board with no obstacles.
+     * @see #knightDistanceTo(Position)
+     */
+    static int knightDistance(final int dr, final int dc) {
+        int dx = Math.abs(dr);
+        int dy = Math.abs(dc);
+        if (dx < dy) {
+            final int swap = dx;
+            dx = dy;
+            dy = swap;
+        }
+        // the two exceptions to the closed form below
+        if (dx == 1 && dy == 0) {
+            return 3;
+        }
+        if (dx == 2 && dy == 2) {
+            return 4;
+        }
+        final int delta = dx - dy;
+        if (dy > delta) {
+            return delta - 2 * Math.floorDiv(delta - dy, 3);
+        }
+        return delta - 2 * Math.floorDiv(delta - dy, 4);
+    }
+
     @Override
     public String toString() {
         return "Position{" +
@@ -0,0 +1,55 @@
+package com.blakec;
+
+import com.blakec.graph.Vertex;
+import com.blakec.graph.VertexIndex;
+
+/**
+ * Vertex index over the positions of a board.  The id of a position is its row major cell index relative to the
+ * board's base position, so no lookup table is needed in either direction.
+ */
+class PositionIndex implements VertexIndex {
+    final int baseRow;
+    final int baseCol;
+    final int width;
+    final int height;
+
+    PositionIndex(final Position basePosition, final int width, final int height) {
+        this.baseRow = basePosition.getR();
+        this.baseCol = basePosition.getC();
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public int size() {
+        return width * height;
+    }
+
+    @Override
+    public int indexOf(final Vertex v) {
+        if (!(v instanceof Position)) {
+            return -1;
+        }
+        final Position p = (Position) v;
+        return indexOf(p.getR(), p.getC());
+    }
+
+    /**
+     * @param r row on the board.
+     * @param c column on the board.
+     * @return id of the cell, or -1 if it is off the board.
+     */
+    int indexOf(final int r, final int c) {
+        final int localRow = r - baseRow;
+        final int localCol = c - baseCol;
+        if (localRow < 0 || localRow >= height || localCol < 0 || localCol >= width) {
+            return -1;
+        }
+        return localRow * width + localCol;
+    }
+
+    @Override
+    public Position vertexAt(final int id) {
+        return new Position(baseRow + id / width, baseCol + id % width);
+    }
+}
@@ -0,0 +1,526 @@
+package com.blakec;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * Builds an order of the cells of a grid that visits every cell once, runs from a given start cell to a given end
+ * cell and only ever steps to one of the 8 cells around the current one.  Used to order the sub boards of a board
+ * too large to search for the longest path of sub boards.
+ * <p/>
+ * The rows are split into three bands.  The head band holds the start cell and is covered first, ending at one
+ * side of its bottom row.  The middle rows are walked back and forth, a whole row at a time.  The tail band holds
+ * the end cell and is covered last, as the head band is but in reverse.  Each band is built from rectangles walked
+ * row by row, with two row strips zig zagged across so a walk can end on either side.  This is tried in each of
+ * the 8 orientations of the grid.
+ * <p/>
+ * Cells are numbered row * cols + col.
+ */
+class SerpentineOrdering {
+    final int rows;
+    final int cols;
+
+    /**
+     * Orientation of the grid the order is built in.  The rows and columns are swapped first, then either is
+     * flipped.
+     */
+    final boolean isTransposed;
+    final boolean isRowFlipped;
+    final boolean isColFlipped;
+    /**
+     * size of the grid in the orientation.
+     */
+    final int numRows;
+    final int numCols;
+    /**
+     * cells of the order so far, in grid coordinates.
+     */
+    final int[] order;
+    int size = 0;
+
+    SerpentineOrdering(final int rows, final int cols, final int orientation) {
+        this.rows = rows;
+        this.cols = cols;
+        this.isTransposed = (orientation & 4) != 0;
+        this.isRowFlipped = (orientation & 1) != 0;
+        this.isColFlipped = (orientation & 2) != 0;
+        this.numRows = isTransposed ? cols : rows;
+        this.numCols = isTransposed ? rows : cols;
+        this.order = new int[rows * cols];
+    }
+
+    /**
+     * @param rows  number of rows of the grid.
+     * @param cols  number of columns of the grid.
+     * @param start cell to start on.
+     * @param end   cell to end on.
+     * @return every cell of the grid in order from start to end, each a king's move from the one before.  null if
+     * no such order could be built, as when the grid is a single row and start isn't at one of its ends.
+     */
+    static int[] compute(final int rows, final int cols, final int start, final int end) {
+        if (start == end) {
+            return rows * cols == 1 ? new int[]{start} : null;
+        }
+        final int[] order = computeByBands(rows, cols, start, end);
+        if (order != null) {
+            return order;
+        }
+        final int[] rotated = computeByRotation(rows, cols, start, end);
+        if (rotated != null) {
+            return rotated;
+        }
+        final int[] reversed = computeByRotation(rows, cols, end, start);
+        if (reversed != null) {
+            reverse(reversed, 0);
+            return reversed;
+        }
+        final int[] aroundCorner = computeAroundCorner(rows, cols, start, end);
+        if (aroundCorner != null) {
+            return aroundCorner;
+        }
+        return computeThroughColumn(rows, cols, start, end);
+    }
+
+    /**
+     * On a grid three cells across, a start and end in the same column split the grid in two, so the bands can't
+     * be used.  Those are ordered start, one side of the column, the middle cell left in the column, the other side,
+     * end.
+     *
+     * @return order from start to end, null if they aren't in the same column of a three row grid or the sides
+     * can't be covered.
+     */
+    static int[] computeThroughColumn(final int rows, final int cols, final int start, final int end) {
+        for (int orientation = 0; orientation < 8; orientation++) {
+            final SerpentineOrdering ordering = new SerpentineOrdering(rows, cols, orientation);
+            if (ordering.numRows != 3 || ordering.toCol(start) != ordering.toCol(end)) {
+                continue;
+            }
+            for (final boolean isLeftFirst : new boolean[]{true, false}) {
+                if (ordering.buildThroughColumn(ordering.toRow(start), ordering.toRow(end), ordering.toCol(start), isLeftFirst)
+                        && isValid(rows, cols, start, end, ordering.order)) {
+                    return ordering.order;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Neither the bands nor a rotation work when the start and end are the two cells next to a corner on either
+     * side of it, as (0, 1) and (1, 0).  Those are ordered by going away from the corner along its two rows, covering
+     * the rows below them, and coming back in by the cell diagonal to the corner and the corner itself.
+     *
+     * @return order from start to end, null if they aren't next to a corner or the rows below can't be covered.
+     */
+    static int[] computeAroundCorner(final int rows, final int cols, final int start, final int end) {
+        for (int orientation = 0; orientation < 8; orientation++) {
+            for (final boolean isReversed : new boolean[]{false, true}) {
+                final SerpentineOrdering ordering = new SerpentineOrdering(rows, cols, orientation);
+                final int first = isReversed ? end : start;
+                final int last = isReversed ? start : end;
+                if (ordering.toRow(first) != 0 || ordering.toCol(first) != 1
+                        || ordering.toRow(last) != 1 || ordering.toCol(last) != 0
+                        || !ordering.buildAroundCorner()) {
+                    continue;
+                }
+                if (isReversed) {
+                    reverse(ordering.order, 0);
+                }
+                if (isValid(rows, cols, start, end, ordering.order)) {
+                    return ordering.order;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The bands can't be built when the end is next to the start along an edge.  Instead this builds an order
+     * start .. p end .. y that ends on a neighbor y of p, and reverses the part after p to get start .. p y .. end.
+     * <p/>
+     * p is next to end and y is next to p, so only the cells within two rows and two columns of end can be y.  At
+     * most 24 are tried, however large the grid.
+     *
+     * @return order from start to end, null if no y works.
+     */
+    static int[] computeByRotation(final int rows, final int cols, final int start, final int end) {
+        final int endRow = end / cols;
+        final int endCol = end % cols;
+        for (int r = Math.max(0, endRow - 2); r <= Math.min(rows - 1, endRow + 2); r++) {
+            for (int c = Math.max(0, endCol - 2); c <= Math.min(cols - 1, endCol + 2); c++) {
+                final int[] rotated = computeByRotation(rows, cols, start, end, r * cols + c);
+                if (rotated != null) {
+                    return rotated;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return order from start to end rotated about the given y, null if it doesn't work.
+     * @see #computeByRotation(int, int, int, int)
+     */
+    static int[] computeByRotation(final int rows, final int cols, final int start, final int end, final int y) {
+        if (y == start || y == end) {
+            return null;
+        }
+        final int[] other = computeByBands(rows, cols, start, y);
+        if (other == null) {
+            return null;
+        }
+        int i = 0;
+        while (other[i] != end) {
+            i++;
+        }
+        if (!isNeighbor(cols, other[i - 1], y)) {
+            return null;
+        }
+        reverse(other, i);
+        return other;
+    }
+
+    /**
+     * Reverses the cells of order from index from to the end.
+     */
+    static void reverse(final int[] order, final int from) {
+        for (int i = from, j = order.length - 1; i < j; i++, j--) {
+            final int cell = order[i];
+            order[i] = order[j];
+            order[j] = cell;
+        }
+    }
+
+    /**
+     * @return order built from bands in the first orientation that works, null if none do.
+     */
+    static int[] computeByBands(final int rows, final int cols, final int start, final int end) {
+        for (int orientation = 0; orientation < 8; orientation++) {
+            final SerpentineOrdering ordering = new SerpentineOrdering(rows, cols, orientation);
+            if (ordering.build(start, end) && isValid(rows, cols, start, end, ordering.order)) {
+                return ordering.order;
+            }
+        }
+        return null;
+    }
+
+    static boolean isNeighbor(final int cols, final int a, final int b) {
+        return Math.abs(a / cols - b / cols) <= 1 && Math.abs(a % cols - b % cols) <= 1;
+    }
+
+    /**
+     * @return true if order visits every cell once, from start to end, each a king's move from the one before.
+     */
+    static boolean isValid(final int rows, final int cols, final int start, final int end, final int[] order) {
+        if (order.length != rows * cols || order[0] != start || order[order.length - 1] != end) {
+            return false;
+        }
+        final boolean[] isVisited = new boolean[order.length];
+        for (int i = 0; i < order.length; i++) {
+            if (order[i] < 0 || order[i] >= order.length || isVisited[order[i]]) {
+                return false;
+            }
+            isVisited[order[i]] = true;
+            if (i > 0 && !isNeighbor(cols, order[i - 1], order[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the order in this orientation.
+     *
+     * @return false if it can't be built this way.
+     */
+    boolean build(final int start, final int end) {
+        final int startRow = toRow(start);
+        final int startCol = toCol(start);
+        final int endRow = toRow(end);
+        final int endCol = toCol(end);
+        if (startRow >= endRow) {
+            return false;
+        }
+        // last row of the head band and first row of the tail band.  A band needs two rows unless its cell is at
+        // the end of the row.
+        final List<Integer> headRows = Lists.newArrayList();
+        if (startRow > 0) {
+            headRows.add(startRow);
+        } else {
+            headRows.add(0);
+            headRows.add(1);
+        }
+        final List<Integer> tailRows = Lists.newArrayList();
+        if (endRow < numRows - 1) {
+            tailRows.add(endRow);
+        } else {
+            tailRows.add(numRows - 1);
+            tailRows.add(numRows - 2);
+        }
+        for (final int headRow : headRows) {
+            for (final int tailRow : tailRows) {
+                if (headRow >= tailRow) {
+                    continue;
+                }
+                for (final boolean isHeadExitRight : new boolean[]{true, false}) {
+                    // each middle row is walked to the other side.
+                    final boolean isTailEntryRight = isHeadExitRight == ((tailRow - headRow - 1) % 2 == 0);
+                    final int[] head = buildBand(startRow, startCol, headRow + 1, isHeadExitRight);
+                    final int[] tail = buildBand(numRows - 1 - endRow, endCol, numRows - tailRow, isTailEntryRight);
+                    if (head == null || tail == null) {
+                        continue;
+                    }
+                    size = 0;
+                    for (final int cell : head) {
+                        add(cell / numCols, cell % numCols);
+                    }
+                    boolean isRight = isHeadExitRight;
+                    for (int r = headRow + 1; r < tailRow; r++) {
+                        for (int i = 0; i < numCols; i++) {
+                            add(r, isRight ? numCols - 1 - i : i);
+                        }
+                        isRight = !isRight;
+                    }
+                    // the tail band was built upside down from the end cell, so it is added in reverse.
+                    for (int i = tail.length - 1; i >= 0; i--) {
+                        add(numRows - 1 - tail[i] / numCols, tail[i] % numCols);
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the order from (0, 1) to (1, 0) in this orientation: right along the top row, back along the second
+     * row to column 2, through the rows below, then (1, 1), (0, 0) and (1, 0).
+     *
+     * @return false if it can't be built this way.
+     */
+    boolean buildAroundCorner() {
+        if (numRows > 2 && numCols < 3) {
+            // the rows below can only be entered from column 2 of the second row.
+            return false;
+        }
+        size = 0;
+        for (int c = 1; c < numCols; c++) {
+            add(0, c);
+        }
+        for (int c = numCols - 1; c >= 2; c--) {
+            add(1, c);
+        }
+        if (numRows > 2) {
+            // from a cell below (1, 2) to a cell below (1, 1).
+            int[] below = null;
+            for (int a = 1; a <= 3 && below == null; a++) {
+                for (int b = 0; b <= 2 && below == null; b++) {
+                    if (a != b && a < numCols && b < numCols) {
+                        below = compute(numRows - 2, numCols, a, b);
+                    }
+                }
+            }
+            if (below == null) {
+                return false;
+            }
+            for (final int cell : below) {
+                add(2 + cell / numCols, cell % numCols);
+            }
+        }
+        add(1, 1);
+        add(0, 0);
+        add(1, 0);
+        return true;
+    }
+
+    /**
+     * Builds the order from startRow to endRow of the given column of a three row grid in this orientation.
+     *
+     * @param isLeftFirst true to cover the columns left of col before the middle cell, false the columns right of it.
+     * @return false if it can't be built this way.
+     */
+    boolean buildThroughColumn(final int startRow, final int endRow, final int col, final boolean isLeftFirst) {
+        final int middleRow = 3 - startRow - endRow;
+        size = 0;
+        add(startRow, col);
+        if (!addSide(col, isLeftFirst, startRow, middleRow)) {
+            return false;
+        }
+        add(middleRow, col);
+        if (!addSide(col, !isLeftFirst, middleRow, endRow)) {
+            return false;
+        }
+        add(endRow, col);
+        return true;
+    }
+
+    /**
+     * Covers the columns on one side of col of a three row grid, from next to fromRow of col to next to toRow.
+     *
+     * @return false if the side can't be covered that way.
+     */
+    boolean addSide(final int col, final boolean isLeft, final int fromRow, final int toRow) {
+        final int width = isLeft ? col : numCols - 1 - col;
+        if (width == 0) {
+            return Math.abs(fromRow - toRow) <= 1;
+        }
+        // column of the side next to col, in the side's own coordinates.
+        final int nextCol = isLeft ? width - 1 : 0;
+        for (int a = Math.max(0, fromRow - 1); a <= Math.min(2, fromRow + 1); a++) {
+            for (int b = Math.max(0, toRow - 1); b <= Math.min(2, toRow + 1); b++) {
+                final int[] side = a == b ? null : compute(3, width, a * width + nextCol, b * width + nextCol);
+                if (side == null) {
+                    continue;
+                }
+                for (final int cell : side) {
+                    add(cell / width, (isLeft ? 0 : col + 1) + cell % width);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Covers the top numBandRows rows, starting at the given cell and ending on the bottom row of the band at the
+     * given side, within a column of it.
+     *
+     * @param startRow    row of the start cell, either the bottom row of the band or the top row of a two row band.
+     * @param startCol    column of the start cell.
+     * @param numBandRows number of rows in the band.
+     * @param isExitRight true to end on the right side, false the left.
+     * @return cells of the band in order as row * numCols + col, null if it can't be built.
+     */
+    int[] buildBand(final int startRow, final int startCol, final int numBandRows, final boolean isExitRight) {
+        // build for an exit on the right and mirror the columns if needed.
+        final int col = isExitRight ? startCol : numCols - 1 - startCol;
+        final int bottom = numBandRows - 1;
+        final List<Integer> cells = Lists.newArrayList();
+        if (numBandRows == 1) {
+            // a single row, walked from one end to the other.
+            if (col != 0) {
+                return null;
+            }
+            addAcross(cells, 0, 0, 1, numCols);
+        } else if (startRow == bottom && col == numCols - 1) {
+            // up the right column, then down the rest to just left of the start cell.
+            for (int r = bottom; r >= 0; r--) {
+                cells.add(r * numCols + col);
+            }
+            addAlongRight(cells, 0, 0, numBandRows, numCols - 1, false);
+        } else if (startRow == bottom) {
+            // the columns up to the start cell end at the top, then the rest are covered down to the bottom right.
+            addAlongRight(cells, 0, 0, numBandRows, col + 1, true);
+            addAcross(cells, 0, col + 1, numBandRows, numCols - col - 1);
+        } else if (startRow == 0 && numBandRows == 2) {
+            // back along the top row to the left edge, along the bottom row to below the start cell, then zig zag
+            // across the rest.
+            for (int c = col; c >= 0; c--) {
+                cells.add(c);
+            }
+            for (int c = 0; c <= col; c++) {
+                cells.add(numCols + c);
+            }
+            for (int c = col + 1; c < numCols; c++) {
+                cells.add(c);
+                cells.add(numCols + c);
+            }
+        } else {
+            return null;
+        }
+        final int last = cells.get(cells.size() - 1);
+        if (last / numCols != bottom || last % numCols < numCols - 2) {
+            return null;
+        }
+        final int[] band = new int[cells.size()];
+        for (int i = 0; i < band.length; i++) {
+            final int cell = cells.get(i);
+            band[i] = isExitRight ? cell : cell - cell % numCols + numCols - 1 - cell % numCols;
+        }
+        return band;
+    }
+
+    /**
+     * Covers a rectangle from its top left corner to its bottom right, walking its rows back and forth.  An even
+     * row count would end on the left, so the last two rows are zig zagged across together instead, which ends on
+     * the right whatever the width.
+     *
+     * @param top    top row of the rectangle.
+     * @param left   left column of the rectangle.
+     * @param height number of rows.
+     * @param width  number of columns.
+     */
+    void addAcross(final List<Integer> cells, final int top, final int left, final int height, final int width) {
+        addRows(cells, top, left, height, width, false, false, height % 2 == 0);
+    }
+
+    /**
+     * Covers a rectangle from one of its right corners to the other, walking its rows back and forth and zig
+     * zagging the last two together if the row count is odd.
+     *
+     * @param isFromBottom true to start at the bottom right corner, false the top right.
+     * @see #addAcross(List, int, int, int, int)
+     */
+    void addAlongRight(final List<Integer> cells,
+                       final int top,
+                       final int left,
+                       final int height,
+                       final int width,
+                       final boolean isFromBottom) {
+        addRows(cells, top, left, height, width, isFromBottom, true, height % 2 == 1);
+    }
+
+    /**
+     * @param isFromBottom   true to walk the rows from the bottom up.
+     * @param isFirstLeftward true if the first row is walked from right to left.
+     * @param hasZigZag      true to zig zag the last two rows, starting on the left.
+     */
+    void addRows(final List<Integer> cells,
+                 final int top,
+                 final int left,
+                 final int height,
+                 final int width,
+                 final boolean isFromBottom,
+                 final boolean isFirstLeftward,
+                 final boolean hasZigZag) {
+        if (width == 0) {
+            return;
+        }
+        final int numWalkedRows = hasZigZag ? height - 2 : height;
+        for (int i = 0; i < height; i++) {
+            final int r = isFromBottom ? top + height - 1 - i : top + i;
+            if (i < numWalkedRows) {
+                final boolean isLeftward = (i % 2 == 0) == isFirstLeftward;
+                for (int j = 0; j < width; j++) {
+                    cells.add(r * numCols + left + (isLeftward ? width - 1 - j : j));
+                }
+            } else if (i == numWalkedRows) {
+                final int next = isFromBottom ? r - 1 : r + 1;
+                for (int j = 0; j < width; j++) {
+                    cells.add(r * numCols + left + j);
+                    cells.add(next * numCols + left + j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a cell given in the orientation's coordinates.
+     */
+    void add(final int r, final int c) {
+        final int flippedRow = isRowFlipped ? numRows - 1 - r : r;
+        final int flippedCol = isColFlipped ? numCols - 1 - c : c;
+        order[size++] = isTransposed ? flippedCol * cols + flippedRow : flippedRow * cols + flippedCol;
+    }
+
+    int toRow(final int cell) {
+        final int r = isTransposed ? cell % cols : cell / cols;
+        return isRowFlipped ? numRows - 1 - r : r;
+    }
+
+    int toCol(final int cell) {
+        final int c = isTransposed ? cell / cols : cell % cols;
+        return isColFlipped ? numCols - 1 - c : c;
+    }
+}
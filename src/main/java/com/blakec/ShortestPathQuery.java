@@ -0,0 +1,52 @@
+package com.blakec;
+
+/**
+ * A request for the shortest path between two positions on a board.
+ *
+ * @see Board#computeShortestPaths(java.util.List)
+ */
+public class ShortestPathQuery {
+    final Position start;
+    final Position end;
+
+    public ShortestPathQuery(final Position start, final Position end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public Position getStart() {
+        return start;
+    }
+
+    public Position getEnd() {
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return "ShortestPathQuery{" +
+                "start=" + start +
+                ", end=" + end +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ShortestPathQuery query = (ShortestPathQuery) o;
+
+        if (!start.equals(query.start)) return false;
+        if (!end.equals(query.end)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = start.hashCode();
+        result = 31 * result + end.hashCode();
+        return result;
+    }
+}
@@ -0,0 +1,52 @@
+package com.blakec;
+
+import com.blakec.graph.Path;
+
+/**
+ * Outcome of a {@link ShortestPathQuery}.  Holds either the shortest path or the error that stopped the query,
+ * so one bad query doesn't fail the rest of a batch.
+ */
+public class ShortestPathResult {
+    final ShortestPathQuery query;
+    final Path path;
+    final Exception error;
+
+    ShortestPathResult(final ShortestPathQuery query, final Path path, final Exception error) {
+        this.query = query;
+        this.path = path;
+        this.error = error;
+    }
+
+    public ShortestPathQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * @return true if the query ran.  The path may still be empty if the end can't be reached.
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return shortest path from the start to the end, null if the query failed.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return error that stopped the query, null if it succeeded.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "ShortestPathResult{" +
+                "query=" + query +
+                (error == null ? ", path=" + path : ", error=" + error.getMessage()) +
+                '}';
+    }
+}
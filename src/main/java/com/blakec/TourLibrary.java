@@ -0,0 +1,205 @@
+package com.blakec;
+
+import com.blakec.graph.CompactGraph;
+import com.blakec.graph.Path;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Precomputed knight's tours of a blank sub board, keyed by the local cell the tour enters on and the local cell it
+ * exits on.
+ * <p/>
+ * {@link Board#computeLinkPosition} only ever enters and exits a sub board on a small fixed set of cells, so every
+ * sub board between the start and end boards of a longest path can reuse one of under a hundred tours instead of
+ * searching for one.  The tours are generated once by {@link #main(String[])} and shipped as a resource.
+ * <p/>
+ * Resource format, big endian: magic int, version short, tour count int, then per tour the entry cell byte, the
+ * exit cell byte and the SUB_BOARD_SIZE * SUB_BOARD_SIZE cells of the tour in order.
+ */
+class TourLibrary {
+    static final String RESOURCE = "/tours_8x8.bin";
+    static final int MAGIC = 0x4b544f55;
+    static final short VERSION = 1;
+    static final int NUM_CELLS = Board.SUB_BOARD_SIZE * Board.SUB_BOARD_SIZE;
+
+    /**
+     * Library shipped with the code, loaded the first time it is used.
+     */
+    private static class DefaultHolder {
+        static final TourLibrary INSTANCE = loadDefault();
+    }
+
+    /**
+     * Tour of each (entry, exit) pair at index entry * NUM_CELLS + exit, null if there is none.
+     */
+    final byte[][] tours = new byte[NUM_CELLS * NUM_CELLS][];
+    int size = 0;
+
+    /**
+     * @return library shipped with the code.  Empty if the resource is missing or unreadable.
+     */
+    static TourLibrary getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    static TourLibrary loadDefault() {
+        final InputStream in = TourLibrary.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            Board.logger.warning("Tour library " + RESOURCE + " not found, sub boards will be searched.");
+            return new TourLibrary();
+        }
+        try {
+            try {
+                return read(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Board.logger.warning("Could not read tour library " + RESOURCE + ": " + e.getMessage());
+            return new TourLibrary();
+        }
+    }
+
+    /**
+     * @param entryCell local cell index the tour starts on.
+     * @param exitCell  local cell index the tour ends on.
+     * @return local cell indices of the tour in order, null if the library has no such tour.
+     */
+    byte[] getTour(final int entryCell, final int exitCell) {
+        if (entryCell < 0 || entryCell >= NUM_CELLS || exitCell < 0 || exitCell >= NUM_CELLS) {
+            return null;
+        }
+        return tours[entryCell * NUM_CELLS + exitCell];
+    }
+
+    void putTour(final byte[] tour) {
+        final int key = tour[0] * NUM_CELLS + tour[tour.length - 1];
+        if (tours[key] == null) {
+            size++;
+        }
+        tours[key] = tour;
+    }
+
+    /**
+     * @return number of tours in the library.
+     */
+    int size() {
+        return size;
+    }
+
+    static TourLibrary read(final InputStream input) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a tour library.");
+        }
+        final short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported tour library version " + version + ".");
+        }
+        final TourLibrary library = new TourLibrary();
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final int entryCell = in.readUnsignedByte();
+            final int exitCell = in.readUnsignedByte();
+            final byte[] tour = new byte[NUM_CELLS];
+            in.readFully(tour);
+            if (tour[0] != entryCell || tour[NUM_CELLS - 1] != exitCell) {
+                throw new IOException("Tour " + i + " does not run from " + entryCell + " to " + exitCell + ".");
+            }
+            library.putTour(tour);
+        }
+        return library;
+    }
+
+    void write(final OutputStream output) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(size);
+        for (final byte[] tour : tours) {
+            if (tour != null) {
+                out.writeByte(tour[0]);
+                out.writeByte(tour[NUM_CELLS - 1]);
+                out.write(tour);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Computes a tour for every pair of entry and exit cells that {@link Board#computeLinkPosition} can produce
+     * for a sub board in the middle of a longest path.
+     *
+     * @return library of the tours.
+     */
+    static TourLibrary generate() throws Exception {
+        final int size = Board.SUB_BOARD_SIZE;
+        // a 3x3 grid of sub boards.  the tours are of the middle one, entered from and exited to its neighbors.
+        final Board grid = new Board(0, 0, 3 * size, 3 * size);
+        final Board middle = new Board(size, size, size, size);
+        final CompactGraph graph = new Board(0, 0, size, size).getPositionGraph();
+        final Board[] neighbors = new Board[8];
+        int numNeighbors = 0;
+        for (int r = 0; r < 3; r++) {
+            for (int c = 0; c < 3; c++) {
+                if (r != 1 || c != 1) {
+                    neighbors[numNeighbors++] = new Board(r * size, c * size, size, size);
+                }
+            }
+        }
+
+        final TourLibrary library = new TourLibrary();
+        for (final Board prev : neighbors) {
+            // any start position on prev of either color picks one of the two entry cells of the middle board.
+            for (final Position prevStart : new Position[]{prev.getBasePosition(), prev.getBasePosition().add(new Position(0, 1))}) {
+                final Position entry = grid.computeLinkPosition(prev, middle, prevStart, false);
+                for (final Board next : neighbors) {
+                    if (next == prev) {
+                        continue;
+                    }
+                    final Position exit = grid.computeLinkPosition(middle, next, entry, true);
+                    final int entryCell = middle.getCellIndex(entry.getR(), entry.getC());
+                    final int exitCell = middle.getCellIndex(exit.getR(), exit.getC());
+                    if (entryCell == exitCell || library.getTour(entryCell, exitCell) != null) {
+                        continue;
+                    }
+                    final Path path = graph.computeLongestPath(entryCell, exitCell, NUM_CELLS);
+                    if (path.getPath().size() != NUM_CELLS) {
+                        Board.logger.warning("No tour from " + entry + " to " + exit + " in " + middle + ".");
+                        continue;
+                    }
+                    final byte[] tour = new byte[NUM_CELLS];
+                    for (int i = 0; i < NUM_CELLS; i++) {
+                        final Position p = (Position) path.getPath().get(i);
+                        tour[i] = (byte) (p.getR() * size + p.getC());
+                    }
+                    library.putTour(tour);
+                }
+            }
+        }
+        return library;
+    }
+
+    /**
+     * Regenerates the tour library resource.
+     *
+     * @param args path of the file to write, e.g. src/main/resources/tours_8x8.bin
+     */
+    public static void main(final String[] args) throws Exception {
+        final TourLibrary library = generate();
+        final OutputStream out = new FileOutputStream(args[0]);
+        try {
+            library.write(out);
+        } finally {
+            out.close();
+        }
+        System.out.println("Wrote " + library.size() + " tours to " + args[0]);
+    }
+}
@@ -0,0 +1,84 @@
+package com.blakec.graph;
+
+import java.util.Arrays;
+
+/**
+ * Monotone priority queue for small non-negative integer keys (Dial's algorithm).
+ * <p/>
+ * Keys waiting in the queue always lie within [currentKey, currentKey + maxKeyIncrease], so a circular array of
+ * maxKeyIncrease + 1 buckets is enough to hold them.  Push and pop are O(1) apart from skipping empty buckets,
+ * which is bounded by the largest key increase.
+ * <p/>
+ * There is no decrease key.  Callers push a value again with its smaller key and skip stale entries when popped.
+ */
+class BucketQueue {
+    /**
+     * Values in each bucket.  Bucket i holds the values whose key modulo the number of buckets is i.
+     */
+    final int[][] buckets;
+    final int[] bucketSizes;
+    /**
+     * Key of the bucket being popped from.
+     */
+    int currentKey = 0;
+    int size = 0;
+
+    /**
+     * @param maxKeyIncrease largest difference between the key of a pushed value and the current key.
+     */
+    BucketQueue(final int maxKeyIncrease) {
+        buckets = new int[maxKeyIncrease + 1][];
+        bucketSizes = new int[maxKeyIncrease + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new int[4];
+        }
+    }
+
+    /**
+     * Removes every value and starts keys over from 0.
+     */
+    void clear() {
+        Arrays.fill(bucketSizes, 0);
+        currentKey = 0;
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param value value to add.
+     * @param key   key of the value, must be in [currentKey, currentKey + maxKeyIncrease].
+     */
+    void push(final int value, final int key) {
+        final int bucket = key % buckets.length;
+        if (bucketSizes[bucket] == buckets[bucket].length) {
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], bucketSizes[bucket] * 2);
+        }
+        buckets[bucket][bucketSizes[bucket]++] = value;
+        size++;
+    }
+
+    /**
+     * Removes a value with the smallest key.  The key is available from {@link #getCurrentKey()} afterwards.
+     *
+     * @return value with the smallest key.
+     */
+    int pop() {
+        int bucket = currentKey % buckets.length;
+        while (bucketSizes[bucket] == 0) {
+            currentKey++;
+            bucket = currentKey % buckets.length;
+        }
+        size--;
+        return buckets[bucket][--bucketSizes[bucket]];
+    }
+
+    /**
+     * @return key of the last popped value.
+     */
+    int getCurrentKey() {
+        return currentKey;
+    }
+}
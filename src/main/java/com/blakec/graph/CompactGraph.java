@@ -0,0 +1,1607 @@
+package com.blakec.graph;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Graph class that has weighted directed edges stored in compressed sparse row form.
+ * <p/>
+ * Every vertex is identified by an int id handed out by a {@link VertexIndex}.  The edges leaving vertex v are stored
+ * in targets[offsets[v]] .. targets[offsets[v + 1] - 1] along with their weights at the same positions of the weight
+ * array.  This avoids allocating a set and an Edge object per vertex and lets the search algorithms work on array
+ * indices instead of hashing vertices.
+ * <p/>
+ * Has the ability to compute longest path via depth first search.
+ * <p/>
+ * Has the ability to compute shortest path via Dijkstra's Algorithm and priority queue.  When every edge weight is a
+ * small non-negative integer, as on a board, a bucket queue is used instead of the Fibonacci heap.
+ * <p/>
+ * The graph can't be changed after it is built and searches keep their state per call, so it is safe to search
+ * from many threads at once.
+ */
+public class CompactGraph {
+    /**
+     * Largest edge weight for which shortest paths use a bucket queue.
+     */
+    public static final int MAX_BUCKET_WEIGHT = 255;
+
+    /**
+     * Mapping between vertices and their ids.
+     */
+    final VertexIndex index;
+    /**
+     * offsets[v] is the position of the first edge of v in targets and weights.  Has one more entry than vertices.
+     */
+    final int[] offsets;
+    /**
+     * Target vertex id of each edge.
+     */
+    final int[] targets;
+    /**
+     * Weight of each edge.
+     */
+    final double[] weights;
+    /**
+     * Largest edge weight if every weight is an integer in [0, MAX_BUCKET_WEIGHT], -1 otherwise.
+     */
+    final int maxIntegerWeight;
+    /**
+     * This graph with every edge reversed, built on first use.
+     */
+    private volatile CompactGraph reverseGraph;
+
+    CompactGraph(final VertexIndex index, final int[] offsets, final int[] targets, final double[] weights) {
+        this.index = index;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.maxIntegerWeight = computeMaxIntegerWeight(weights);
+    }
+
+    /**
+     * @return largest weight if every weight is an integer in [0, MAX_BUCKET_WEIGHT], -1 otherwise.
+     */
+    static int computeMaxIntegerWeight(final double[] weights) {
+        int max = 0;
+        for (final double weight : weights) {
+            if (weight < 0 || weight > MAX_BUCKET_WEIGHT || weight != Math.floor(weight)) {
+                return -1;
+            }
+            max = Math.max(max, (int) weight);
+        }
+        return max;
+    }
+
+    /*****************************
+     ********** CREATION *********
+     *****************************/
+
+    /**
+     * Builder that collects edges in any order and packs them into a CompactGraph.
+     */
+    public static class Builder {
+        final VertexIndex index;
+        int[] sources = new int[16];
+        int[] targets = new int[16];
+        double[] weights = new double[16];
+        int numEdges = 0;
+
+        public Builder(final VertexIndex index) {
+            this.index = index;
+        }
+
+        public Builder addEdge(final int start, final int end, final double weight) {
+            if (numEdges == sources.length) {
+                final int capacity = numEdges * 2;
+                sources = Arrays.copyOf(sources, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            sources[numEdges] = start;
+            targets[numEdges] = end;
+            weights[numEdges] = weight;
+            numEdges++;
+            return this;
+        }
+
+        public CompactGraph build() {
+            final int numVertices = index.size();
+            final int[] offsets = new int[numVertices + 1];
+            for (int e = 0; e < numEdges; e++) {
+                offsets[sources[e] + 1]++;
+            }
+            for (int v = 0; v < numVertices; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            // scatter the edges into their slot, keeping the order they were added in for each vertex.
+            final int[] next = Arrays.copyOf(offsets, numVertices);
+            final int[] packedTargets = new int[numEdges];
+            final double[] packedWeights = new double[numEdges];
+            for (int e = 0; e < numEdges; e++) {
+                final int slot = next[sources[e]]++;
+                packedTargets[slot] = targets[e];
+                packedWeights[slot] = weights[e];
+            }
+            return new CompactGraph(index, offsets, packedTargets, packedWeights);
+        }
+    }
+
+    /**
+     * Returns this graph with every edge reversed, generating it the first time it is needed.
+     *
+     * @return graph with an edge v -> u of the same weight for every edge u -> v of this graph.
+     */
+    public CompactGraph getReverseGraph() {
+        CompactGraph reverse = reverseGraph;
+        if (reverse == null) {
+            synchronized (this) {
+                reverse = reverseGraph;
+                if (reverse == null) {
+                    final Builder builder = new Builder(index);
+                    for (int u = 0; u < getNumVertices(); u++) {
+                        for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                            builder.addEdge(targets[e], u, weights[e]);
+                        }
+                    }
+                    reverse = builder.build();
+                    reverseGraph = reverse;
+                }
+            }
+        }
+        return reverse;
+    }
+
+    public int getNumVertices() {
+        return offsets.length - 1;
+    }
+
+    public int getNumEdges() {
+        return targets.length;
+    }
+
+    public VertexIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @param v vertex id.
+     * @return position of the first edge of v.
+     */
+    public int getFirstEdge(final int v) {
+        return offsets[v];
+    }
+
+    /**
+     * @param v vertex id.
+     * @return position one past the last edge of v.
+     */
+    public int getEndEdge(final int v) {
+        return offsets[v + 1];
+    }
+
+    public int getTarget(final int edge) {
+        return targets[edge];
+    }
+
+    public double getWeight(final int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Converts a sequence of vertex ids into a path.
+     *
+     * @param ids    vertex ids.
+     * @param length number of ids to use.
+     * @param weight weight of the path.
+     * @return path packed as the given ids.
+     */
+    Path toPath(final int[] ids, final int length, final double weight) {
+        return new Path(index, ids, length, weight);
+    }
+
+    Path toPath(final int[] ids, final double weight) {
+        return toPath(ids, ids.length, weight);
+    }
+
+    /**********************************
+     ********** LONGEST PATH *********
+     **********************************/
+
+    /**
+     * Number of vertices a bounded backtracking search may visit before giving up on finding a path of the max
+     * size.  Most 8x8 boards the greedy walks get stuck on need a few hundred, and giving up takes a fraction of
+     * a second.
+     */
+    static final long MAX_BACKTRACKING_STEPS = 200000;
+    /**
+     * Number of vertices a search visits between checks of its deadline.  Keeps the cost of reading the clock
+     * negligible while still stopping within a fraction of a millisecond.
+     */
+    static final int DEADLINE_CHECK_INTERVAL = 1024;
+    /**
+     * Number of vertices after the source on the paths the parallel exhaustive search splits into tasks.  A
+     * knight has up to 8 moves, so this gives up to a few hundred tasks to balance over the workers.
+     */
+    static final int PARALLEL_SPLIT_DEPTH = 3;
+    /**
+     * Largest number of vertices {@link #computeLongestPathBySubsets(int, int)} accepts.  Its table has an int for
+     * every subset of vertices, so memory and time grow 4x every 2 vertices.  On a grid of sub boards, with 8
+     * neighbors each, it takes 4MB and ~10ms at 20 vertices (4x5), and would take 64MB and ~60ms at 24 (4x6).
+     * Grids larger than this are ordered through every sub board by a serpentine ordering in a millisecond or
+     * less, so a larger table would only cost memory per call.
+     */
+    public static final int MAX_SUBSET_SEARCH_VERTICES = 20;
+
+    /**
+     * Computes the longest path from source to target. This uses Warnsdorf's rules as a
+     * heuristic to speed up graph traversal.  Does not use edge weights.
+     * <p/>
+     * Greedy Warnsdorf walks are tried first since they find a path of the max size in linear time on most
+     * boards.  If they all get stuck, depth first searches with a bounded number of steps and different tie breaks
+     * are tried, and only if every one of them runs out of steps is the search run until all paths are exhausted.
+     * <p/>
+     * Every search backtracks as soon as the path so far can't be extended to one long enough, see
+     * {@link #computeUpperBound(int, int, long, LongestPathState)}.  The bounded searches only want a path of the
+     * max size, while the exhaustive search wants any path longer than the longest found, so it still returns the
+     * longest path.
+     * <p/>
+     * NOTE: This is brute force and should not be run on large graphs.
+     *
+     * @param source      source vertex.
+     * @param target      target vertex.
+     * @param maxPathSize upper bound of path size in this graph.
+     * @return longest path found.
+     */
+    public Path computeLongestPath(final Vertex source, final Vertex target, final int maxPathSize) {
+        return computeLongestPath(index.indexOf(source), index.indexOf(target), maxPathSize);
+    }
+
+    /**
+     * @see #computeLongestPath(Vertex, Vertex, int)
+     */
+    public Path computeLongestPath(final int source, final int target, final int maxPathSize) {
+        return computeLongestPath(source, target, maxPathSize, Deadline.none()).getPath();
+    }
+
+    /**
+     * Computes the longest path from source to target, stopping once the deadline expires.
+     *
+     * @param source      source vertex.
+     * @param target      target vertex.
+     * @param maxPathSize upper bound of path size in this graph.
+     * @param deadline    when to give up and return the longest path found so far.
+     * @return longest path found and whether the search ran to the end.
+     * @see #computeLongestPath(Vertex, Vertex, int)
+     */
+    public LongestPathResult computeLongestPath(final Vertex source,
+                                                final Vertex target,
+                                                final int maxPathSize,
+                                                final Deadline deadline) {
+        return computeLongestPath(index.indexOf(source), index.indexOf(target), maxPathSize, deadline);
+    }
+
+    /**
+     * @see #computeLongestPath(Vertex, Vertex, int, Deadline)
+     */
+    public LongestPathResult computeLongestPath(final int source,
+                                                final int target,
+                                                final int maxPathSize,
+                                                final Deadline deadline) {
+        return computeLongestPath(source, target, maxPathSize, deadline, null);
+    }
+
+    /**
+     * Computes the longest path from source to target, running the exhaustive search in parallel.
+     * <p/>
+     * The exhaustive search is split into a task for every path of {@link #PARALLEL_SPLIT_DEPTH} vertices after
+     * the source.  The tasks share the size of the longest path found so far, so each prunes against the best
+     * of all of them, and they all stop as soon as any one finds a path of the max size.
+     *
+     * @param pool pool to run the exhaustive search on, null to run it on the calling thread.
+     * @see #computeLongestPath(Vertex, Vertex, int, Deadline)
+     */
+    public LongestPathResult computeLongestPath(final Vertex source,
+                                                final Vertex target,
+                                                final int maxPathSize,
+                                                final Deadline deadline,
+                                                final ForkJoinPool pool) {
+        return computeLongestPath(index.indexOf(source), index.indexOf(target), maxPathSize, deadline, pool);
+    }
+
+    /**
+     * @see #computeLongestPath(Vertex, Vertex, int, Deadline, ForkJoinPool)
+     */
+    public LongestPathResult computeLongestPath(final int source,
+                                                final int target,
+                                                final int maxPathSize,
+                                                final Deadline deadline,
+                                                final ForkJoinPool pool) {
+        final int[] hopsToTarget = computeHopsFrom(target);
+        final int[] tour = computeWarnsdorffPath(source, target, maxPathSize, hopsToTarget);
+        if (tour != null) {
+            return new LongestPathResult(toPath(tour, tour.length - 1), true, true);
+        }
+        final LongestPathProperties properties = new LongestPathProperties(this);
+        // longest path found by any of the searches so far.
+        LongestPathState best = null;
+        for (final int hopPreference : new int[]{1, 0, -1}) {
+            // the bounded searches only look for a path of max size, pruning any branch that can't reach one.
+            final LongestPathState state = new LongestPathState(this, properties, target, hopsToTarget, hopPreference,
+                    maxPathSize, maxPathSize, MAX_BACKTRACKING_STEPS, deadline, new AtomicInteger());
+            search(source, state);
+            if (best == null || state.longestPathSize > best.longestPathSize) {
+                best = state;
+            }
+            if (state.isExpired || state.longestPathSize == maxPathSize) {
+                // either the deadline expired or a path of max size was found.
+                return toResult(best, !state.isExpired);
+            }
+            if (state.stepsLeft >= 0) {
+                if (!state.canPrune) {
+                    // every path was tried.
+                    return toResult(best, true);
+                }
+                // there is no path of max size, the other orders won't find one either.
+                break;
+            }
+        }
+        // search exhaustively, pruning only the branches that can't beat the longest path found so far.
+        if (pool != null) {
+            final LongestPathTask task = new LongestPathTask(this, properties, new int[]{source}, target, hopsToTarget,
+                    maxPathSize, new AtomicInteger(best.longestPathSize), deadline);
+            final LongestPathState found = pool.invoke(task);
+            if (found != null && found.longestPathSize > best.longestPathSize) {
+                best = found;
+            }
+            return toResult(best, !task.isExpired);
+        }
+        final LongestPathState state = new LongestPathState(this, properties, target, hopsToTarget, 1, maxPathSize, 0,
+                Long.MAX_VALUE, deadline, new AtomicInteger());
+        System.arraycopy(best.longestPath, 0, state.longestPath, 0, best.longestPathSize);
+        state.longestPathSize = best.longestPathSize;
+        search(source, state);
+        return toResult(state, !state.isExpired);
+    }
+
+    LongestPathResult toResult(final LongestPathState state, final boolean complete) {
+        final Path path = toPath(state.longestPath, state.longestPathSize, state.longestPathSize - 1);
+        final boolean hasMaxPathSize = state.longestPathSize == state.maxPathSize;
+        return new LongestPathResult(path, hasMaxPathSize, complete || hasMaxPathSize);
+    }
+
+    /**
+     * Computes the longest path from source to target exactly, by dynamic programming over subsets of vertices
+     * (Held-Karp).
+     * <p/>
+     * For every subset of vertices containing the source, a bit set records which vertices a path from the source
+     * through exactly that subset can end on.  Subsets are visited in increasing order, so every path is extended
+     * from a subset before the larger subset is visited.  The longest path is read back from the largest subset
+     * whose paths can end on the target.  Takes time proportional to 2^n times the number of edges, regardless
+     * of how hard the graph is for a depth first search.
+     *
+     * @param source source vertex.
+     * @param target target vertex.
+     * @return longest path from source to target, empty with weight -1 if there is none.
+     * @throws IllegalArgumentException if the graph has more than {@link #MAX_SUBSET_SEARCH_VERTICES} vertices.
+     */
+    public Path computeLongestPathBySubsets(final int source, final int target) {
+        final int numVertices = getNumVertices();
+        if (numVertices > MAX_SUBSET_SEARCH_VERTICES) {
+            throw new IllegalArgumentException("Subset search is limited to " + MAX_SUBSET_SEARCH_VERTICES
+                    + " vertices, the graph has " + numVertices + ".");
+        }
+        // bit u of neighbors[v] is set if there is an edge from v to u, and bit v of predecessors[u] too.
+        final int[] neighbors = new int[numVertices];
+        final int[] predecessors = new int[numVertices];
+        for (int v = 0; v < numVertices; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                neighbors[v] |= 1 << targets[e];
+                predecessors[targets[e]] |= 1 << v;
+            }
+        }
+        final int targetBit = 1 << target;
+        // bit v of ends[subset] is set if a path from the source visits exactly the subset and ends on v.
+        final int[] ends = new int[1 << numVertices];
+        ends[1 << source] = 1 << source;
+        int longest = 0;
+        for (int subset = 1 << source; subset < ends.length; subset++) {
+            if ((ends[subset] & targetBit) != 0 && Integer.bitCount(subset) > Integer.bitCount(longest)) {
+                longest = subset;
+            }
+            // paths end on the target, so they are never extended past it.
+            int pending = ends[subset] & ~targetBit;
+            while (pending != 0) {
+                final int v = Integer.numberOfTrailingZeros(pending);
+                pending &= pending - 1;
+                int next = neighbors[v] & ~subset;
+                while (next != 0) {
+                    final int u = Integer.numberOfTrailingZeros(next);
+                    next &= next - 1;
+                    ends[subset | 1 << u] |= 1 << u;
+                }
+            }
+        }
+        if (longest == 0) {
+            return new Path(Lists.<Vertex>newArrayList(), -1);
+        }
+
+        // walk back from the target, each time to some vertex the rest of the subset's paths can end on.
+        final int[] path = new int[Integer.bitCount(longest)];
+        int subset = longest;
+        int v = target;
+        for (int i = path.length - 1; i > 0; i--) {
+            path[i] = v;
+            subset &= ~(1 << v);
+            v = Integer.numberOfTrailingZeros(ends[subset] & predecessors[v] & ~targetBit);
+        }
+        path[0] = v;
+        return toPath(path, path.length - 1);
+    }
+
+    /**
+     * @see #computeLongestPathBySubsets(int, int)
+     */
+    public Path computeLongestPathBySubsets(final Vertex source, final Vertex target) {
+        return computeLongestPathBySubsets(index.indexOf(source), index.indexOf(target));
+    }
+
+    /**
+     * Walks from source to target without backtracking, always moving to the unvisited neighbor with the fewest
+     * unvisited neighbors of its own (Warnsdorf's rule).
+     * <p/>
+     * Which way Warnsdorf ties are broken decides whether a walk gets stuck, so the walk is retried with each
+     * combination of two tie break rules: Pohl's rule, which picks the neighbor whose unvisited neighbors have the
+     * fewest unvisited neighbors in total, and preferring the neighbor farthest from or nearest to the target.
+     * Each walk takes time linear in the number of edges.  The target itself is only moved to once no other
+     * neighbor is left.
+     *
+     * @param source   source vertex.
+     * @param target   target vertex.
+     * @param pathSize number of vertices the path must have.
+     * @return path of the given size from source to target, or an empty path with weight -1 if every walk got stuck.
+     */
+    public Path computeWarnsdorffPath(final int source, final int target, final int pathSize) {
+        final int[] tour = computeWarnsdorffPath(source, target, pathSize, computeHopsFrom(target));
+        if (tour == null) {
+            return new Path(Lists.<Vertex>newArrayList(), -1);
+        }
+        return toPath(tour, tour.length - 1);
+    }
+
+    /**
+     * @param hopsToTarget number of edges between each vertex and the target.
+     * @return ids of the path's vertices, null if every walk got stuck.
+     * @see #computeWarnsdorffPath(int, int, int)
+     */
+    int[] computeWarnsdorffPath(final int source, final int target, final int pathSize, final int[] hopsToTarget) {
+        for (final int hopPreference : new int[]{1, -1, 0}) {
+            for (final boolean usePohlRule : new boolean[]{true, false}) {
+                final int[] path = walkWarnsdorff(source, target, pathSize, hopsToTarget, usePohlRule, hopPreference);
+                if (path != null) {
+                    return path;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A single Warnsdorf walk.
+     *
+     * @param usePohlRule   true to break ties by Pohl's rule first.
+     * @param hopPreference 1 to break remaining ties toward the neighbor farthest from the target, -1 toward the
+     *                      nearest, 0 to keep edge order.
+     * @return ids of the path's vertices, null if the walk got stuck.
+     * @see #computeWarnsdorffPath(int, int, int)
+     */
+    int[] walkWarnsdorff(final int source,
+                         final int target,
+                         final int pathSize,
+                         final int[] hopsToTarget,
+                         final boolean usePohlRule,
+                         final int hopPreference) {
+        final int numVertices = getNumVertices();
+        final CompactGraph reverse = getReverseGraph();
+        final boolean[] visited = new boolean[numVertices];
+        // number of unvisited neighbors of each vertex, kept up to date as vertices are visited.
+        final int[] degrees = new int[numVertices];
+        for (int v = 0; v < numVertices; v++) {
+            degrees[v] = offsets[v + 1] - offsets[v];
+        }
+        final int[] path = new int[pathSize];
+        int size = 0;
+        int v = source;
+        while (true) {
+            visited[v] = true;
+            for (int e = reverse.offsets[v]; e < reverse.offsets[v + 1]; e++) {
+                degrees[reverse.targets[e]]--;
+            }
+            if (size == pathSize) {
+                return null;
+            }
+            path[size++] = v;
+            if (v == target) {
+                return size == pathSize ? path : null;
+            }
+
+            int next = -1;
+            int nextDegreeSum = 0;
+            boolean isTargetNeighbor = false;
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                final int u = targets[e];
+                if (visited[u]) {
+                    continue;
+                }
+                if (u == target) {
+                    isTargetNeighbor = true;
+                    continue;
+                }
+                if (degrees[u] == 0) {
+                    // dead end, the target could never be reached from it.
+                    continue;
+                }
+                if (next >= 0 && degrees[u] > degrees[next]) {
+                    continue;
+                }
+                final int degreeSum = usePohlRule ? sumOfUnvisitedNeighborDegrees(u, visited, degrees) : 0;
+                if (next < 0 || degrees[u] < degrees[next] || degreeSum < nextDegreeSum
+                        || degreeSum == nextDegreeSum
+                        && hopPreference * (hopsToTarget[u] - hopsToTarget[next]) > 0) {
+                    next = u;
+                    nextDegreeSum = degreeSum;
+                }
+            }
+            if (next < 0) {
+                if (!isTargetNeighbor) {
+                    return null;
+                }
+                next = target;
+            }
+            v = next;
+        }
+    }
+
+    /**
+     * @return total number of unvisited neighbors of the unvisited neighbors of v.
+     */
+    int sumOfUnvisitedNeighborDegrees(final int v, final boolean[] visited, final int[] degrees) {
+        int sum = 0;
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            if (!visited[targets[e]]) {
+                sum += degrees[targets[e]];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Read-only properties of a graph that its longest path searches rely on.  Computed once per call to
+     * computeLongestPath and shared by all of its searches, including every parallel task.
+     */
+    static class LongestPathProperties {
+        /**
+         * @see LongestPathState#reverse
+         */
+        final CompactGraph reverse;
+        /**
+         * @see LongestPathState#canPrune
+         */
+        final boolean canPrune;
+        /**
+         * @see LongestPathState#colors
+         */
+        final boolean[] colors;
+        /**
+         * @see LongestPathState#colorMask
+         */
+        final long colorMask;
+        /**
+         * @see LongestPathState#neighborMasks
+         */
+        final long[] neighborMasks;
+        /**
+         * @see LongestPathState#maxDegree
+         */
+        final int maxDegree;
+
+        LongestPathProperties(final CompactGraph graph) {
+            final int numVertices = graph.getNumVertices();
+            this.reverse = graph.getReverseGraph();
+            int maxDegree = 0;
+            for (int v = 0; v < numVertices; v++) {
+                maxDegree = Math.max(maxDegree, graph.offsets[v + 1] - graph.offsets[v]);
+            }
+            this.maxDegree = maxDegree;
+            if (numVertices <= Long.SIZE) {
+                neighborMasks = new long[numVertices];
+                for (int v = 0; v < numVertices; v++) {
+                    for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++) {
+                        neighborMasks[v] |= 1L << graph.targets[e];
+                    }
+                }
+            } else {
+                neighborMasks = null;
+            }
+            this.canPrune = graph.isSymmetric();
+            this.colors = canPrune ? graph.computeTwoColoring() : null;
+            long colorMask = 0L;
+            if (colors != null && neighborMasks != null) {
+                for (int v = 0; v < colors.length; v++) {
+                    if (colors[v]) {
+                        colorMask |= 1L << v;
+                    }
+                }
+            }
+            this.colorMask = colorMask;
+        }
+    }
+
+    /**
+     * State of a single longest path search.
+     */
+    static class LongestPathState {
+        final int target;
+        /**
+         * number of edges between each vertex and the target, used to break Warnsdorf ties.
+         */
+        final int[] hopsToTarget;
+        /**
+         * 1 to break Warnsdorf ties toward the neighbor farthest from the target, -1 toward the nearest, 0 to keep
+         * edge order.
+         */
+        final int hopPreference;
+        /**
+         * upper bound of path size in this graph.
+         */
+        final int maxPathSize;
+        /**
+         * smallest size of path worth finding.  Branches that can't reach a path of this size, or one longer than
+         * the longest found so far, are pruned.
+         */
+        final int minPathSize;
+        /**
+         * true if every edge has a reverse edge, which the pruning bounds rely on.
+         */
+        final boolean canPrune;
+        /**
+         * side of each vertex in a two coloring of the graph, null if it has none.  A path alternates sides, so the
+         * smaller side limits how long it can be.
+         */
+        final boolean[] colors;
+        /**
+         * bit set of the vertices with color true.  Only used by the bitmask search.
+         */
+        final long colorMask;
+        /**
+         * vertices on the current path.
+         */
+        final boolean[] visited;
+        /**
+         * number of unvisited neighbors of each vertex.  Decremented as the search visits a neighbor and
+         * incremented again when it backtracks, so Warnsdorf's rule never has to count them.
+         */
+        final int[] degrees;
+        /**
+         * graph with every edge reversed, to find the vertices whose unvisited neighbor count changes.
+         */
+        final CompactGraph reverse;
+        /**
+         * bit u of neighborMasks[v] is set if there is an edge from v to u.  Only set for graphs of at most 64
+         * vertices, where the visited vertices fit in a long and degrees are a popcount.
+         */
+        final long[] neighborMasks;
+        /**
+         * largest number of neighbors of any vertex.
+         */
+        final int maxDegree;
+        /**
+         * the unvisited neighbors of the vertex at each depth of the current path, in the order they are searched.
+         * The neighbors at depth d are at [d * maxDegree, d * maxDegree + maxDegree).
+         */
+        final int[] orderedNeighbors;
+        /**
+         * number of unvisited neighbors of each of the ordered neighbors.  Only used by the bitmask search.
+         */
+        final int[] orderedDegrees;
+        /**
+         * scratch space of the breadth first search in {@link #computeUpperBound(int, int, LongestPathState)}.
+         */
+        final int[] boundQueue;
+        final int[] boundMarks;
+        int boundGeneration = 0;
+        final int[] currentPath;
+        final int[] longestPath;
+        int longestPathSize = 0;
+        /**
+         * size of the longest path found by this search or any other searching in parallel with it.
+         */
+        final AtomicInteger bestPathSize;
+        /**
+         * number of vertices the search may still visit.  Negative once the search has given up.
+         */
+        long stepsLeft;
+        final Deadline deadline;
+        /**
+         * true once the search has stopped because the deadline expired.
+         */
+        boolean isExpired = false;
+
+        LongestPathState(final CompactGraph graph,
+                         final int target,
+                         final int[] hopsToTarget,
+                         final int hopPreference,
+                         final int maxPathSize,
+                         final int minPathSize,
+                         final long maxSteps,
+                         final Deadline deadline) {
+            this(graph, new LongestPathProperties(graph), target, hopsToTarget, hopPreference, maxPathSize,
+                    minPathSize, maxSteps, deadline, new AtomicInteger());
+        }
+
+        /**
+         * @param properties properties of the graph, shared with every other search over it.  Only the mutable
+         *                   arrays of this search are allocated here.
+         */
+        LongestPathState(final CompactGraph graph,
+                         final LongestPathProperties properties,
+                         final int target,
+                         final int[] hopsToTarget,
+                         final int hopPreference,
+                         final int maxPathSize,
+                         final int minPathSize,
+                         final long maxSteps,
+                         final Deadline deadline,
+                         final AtomicInteger bestPathSize) {
+            this.target = target;
+            this.hopsToTarget = hopsToTarget;
+            this.hopPreference = hopPreference;
+            this.maxPathSize = maxPathSize;
+            this.minPathSize = minPathSize;
+            this.visited = new boolean[hopsToTarget.length];
+            this.degrees = new int[hopsToTarget.length];
+            for (int v = 0; v < degrees.length; v++) {
+                degrees[v] = graph.offsets[v + 1] - graph.offsets[v];
+            }
+            this.reverse = properties.reverse;
+            this.maxDegree = properties.maxDegree;
+            this.orderedNeighbors = new int[hopsToTarget.length * maxDegree];
+            this.neighborMasks = properties.neighborMasks;
+            this.orderedDegrees = neighborMasks != null ? new int[orderedNeighbors.length] : null;
+            this.canPrune = properties.canPrune;
+            this.colors = properties.colors;
+            this.colorMask = properties.colorMask;
+            this.boundQueue = new int[hopsToTarget.length];
+            this.boundMarks = new int[hopsToTarget.length];
+            this.currentPath = new int[hopsToTarget.length];
+            this.longestPath = new int[hopsToTarget.length];
+            this.bestPathSize = bestPathSize;
+            this.stepsLeft = maxSteps;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return true if the search should stop.
+         */
+        boolean isDone() {
+            return bestPathSize.get() == maxPathSize || stepsLeft < 0 || isExpired;
+        }
+
+        /**
+         * @return smallest size of path the search still has to beat.
+         */
+        int getGoal() {
+            return Math.max(Math.max(longestPathSize, bestPathSize.get()) + 1, minPathSize);
+        }
+
+        /**
+         * Records the first size vertices of the current path as the longest path.
+         */
+        void setLongestPath(final int size) {
+            System.arraycopy(currentPath, 0, longestPath, 0, size);
+            longestPathSize = size;
+            int best = bestPathSize.get();
+            while (size > best && !bestPathSize.compareAndSet(best, size)) {
+                best = bestPathSize.get();
+            }
+        }
+    }
+
+    /**
+     * Runs a depth first search for the longest path from source, with the bitmask search if the graph is small
+     * enough.
+     */
+    void search(final int source, final LongestPathState state) {
+        if (state.neighborMasks != null) {
+            computeLongestPathRecursive(source, 0, 0L, state);
+        } else {
+            computeLongestPathRecursive(source, 0, state);
+        }
+    }
+
+    /**
+     * Runs a depth first search for the longest path that starts with the given vertices.
+     *
+     * @param prefix vertices the path starts with, the first of them the source.
+     */
+    void search(final int[] prefix, final LongestPathState state) {
+        final int depth = prefix.length - 1;
+        System.arraycopy(prefix, 0, state.currentPath, 0, depth);
+        if (state.neighborMasks != null) {
+            long visited = 0L;
+            for (int i = 0; i < depth; i++) {
+                visited |= 1L << prefix[i];
+            }
+            computeLongestPathRecursive(prefix[depth], depth, visited, state);
+        } else {
+            for (int i = 0; i < depth; i++) {
+                visit(prefix[i], state);
+            }
+            computeLongestPathRecursive(prefix[depth], depth, state);
+        }
+    }
+
+    /**
+     * Recursive part of compute longest path for graphs of at most 64 vertices.  The same search as
+     * {@link #computeLongestPathRecursive(int, int, LongestPathState)}, but the visited vertices are the bits of a
+     * long, so backtracking is free and the unvisited neighbors of a vertex are counted with a single popcount.
+     *
+     * @param v       vertex to visit.
+     * @param depth   number of vertices on the current path before v.
+     * @param visited bit set of the vertices on the current path before v.
+     * @param state   state of this search.
+     */
+    void computeLongestPathRecursive(final int v, final int depth, final long visited, final LongestPathState state) {
+        if (--state.stepsLeft < 0) {
+            return;
+        }
+        if (state.stepsLeft % DEADLINE_CHECK_INTERVAL == 0 && state.deadline.hasExpired()) {
+            state.isExpired = true;
+            return;
+        }
+        final int[] currentPath = state.currentPath;
+        final long visitedWithV = visited | 1L << v;
+        currentPath[depth] = v;
+        if (v == state.target) {
+            if (depth + 1 > state.longestPathSize) {
+                // we reached the target.  this is a path that has a larger size than current largest
+                state.setLongestPath(depth + 1);
+            }
+            return;
+        }
+        if (state.canPrune && computeUpperBound(v, depth, visitedWithV, state) < state.getGoal()) {
+            // no way to finish a long enough path from here.
+            return;
+        }
+
+        // order the unvisited neighbors according to Warnsdorf's rule.
+        final long[] neighborMasks = state.neighborMasks;
+        final int[] hopsToTarget = state.hopsToTarget;
+        final int hopPreference = state.hopPreference;
+        final int[] neighbors = state.orderedNeighbors;
+        final int[] degrees = state.orderedDegrees;
+        final int from = depth * state.maxDegree;
+        int to = from;
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            final int u = targets[e];
+            if ((visitedWithV & 1L << u) != 0) {
+                continue;
+            }
+            final int degree = Long.bitCount(neighborMasks[u] & ~visitedWithV);
+            // insertion sort on (degree, -hopPreference * hops to target).
+            int i = to++;
+            while (i > from && (degrees[i - 1] > degree
+                    || degrees[i - 1] == degree && hopPreference * (hopsToTarget[u] - hopsToTarget[neighbors[i - 1]]) > 0)) {
+                neighbors[i] = neighbors[i - 1];
+                degrees[i] = degrees[i - 1];
+                i--;
+            }
+            neighbors[i] = u;
+            degrees[i] = degree;
+        }
+        for (int i = from; i < to; i++) {
+            computeLongestPathRecursive(neighbors[i], depth + 1, visitedWithV, state);
+            if (state.isDone()) {
+                // if we have already achieved a path with max possible size, or given up, return.
+                return;
+            }
+        }
+    }
+
+    /**
+     * Recursive part of compute longest path.
+     *
+     * @param v     vertex to visit.
+     * @param depth number of vertices on the current path before v.
+     * @param state state of this search.
+     */
+    void computeLongestPathRecursive(final int v, final int depth, final LongestPathState state) {
+        if (--state.stepsLeft < 0) {
+            return;
+        }
+        if (state.stepsLeft % DEADLINE_CHECK_INTERVAL == 0 && state.deadline.hasExpired()) {
+            state.isExpired = true;
+            return;
+        }
+        final int[] currentPath = state.currentPath;
+        visit(v, state);
+        currentPath[depth] = v;
+        if (v == state.target) {
+            if (depth + 1 > state.longestPathSize) {
+                // we reached the target.  this is a path that has a larger size than current largest
+                state.setLongestPath(depth + 1);
+            }
+            unvisit(v, state);
+            return;
+        }
+        if (state.canPrune && computeUpperBound(v, depth, state) < state.getGoal()) {
+            // no way to finish a long enough path from here.
+            unvisit(v, state);
+            return;
+        }
+
+        // order the unvisited neighbors according to Warnsdorf's rule.
+        final int from = depth * state.maxDegree;
+        final int to = orderNeighborsByFewestNeighbors(v, state, from);
+        for (int i = from; i < to; i++) {
+            computeLongestPathRecursive(state.orderedNeighbors[i], depth + 1, state);
+            if (state.isDone()) {
+                // if we have already achieved a path with max possible size, or given up, return.
+                return;
+            }
+        }
+        unvisit(v, state);
+    }
+
+    /**
+     * Bounds the size of any path from source to target that starts with the current path, which ends at v.
+     * <p/>
+     * A vertex the rest of the path passes through needs two unvisited neighbors, counting v, to enter and leave
+     * it by, so any vertex with fewer is stranded and can't be on the path.  That covers vertices cut off
+     * entirely as well as dead ends, since the only vertex the path may end on is the target.  Neither can
+     * vertices that v can't reach through the rest, and if the target is among those the bound is 0.  Finally
+     * the rest of the path alternates colors, so it can't be much longer than twice the smaller color class.
+     *
+     * @param v            last vertex of the current path.
+     * @param depth        number of vertices on the current path before v.
+     * @param visitedWithV bit set of the vertices on the current path, including v.
+     * @param state        state of this search.
+     * @return largest size of path the current path could be extended to.
+     */
+    int computeUpperBound(final int v, final int depth, final long visitedWithV, final LongestPathState state) {
+        final long[] neighborMasks = state.neighborMasks;
+        final long targetBit = 1L << state.target;
+        final long unvisited = -1L >>> (Long.SIZE - neighborMasks.length) & ~visitedWithV;
+        final long headNeighbors = neighborMasks[v] & unvisited;
+        // unvisited vertices other than the target that aren't stranded.
+        long open = 0L;
+        long pending = unvisited & ~targetBit;
+        while (pending != 0) {
+            final long bit = pending & -pending;
+            pending ^= bit;
+            final int u = Long.numberOfTrailingZeros(bit);
+            if (Long.bitCount(neighborMasks[u] & unvisited) + ((headNeighbors & bit) != 0 ? 1 : 0) >= 2) {
+                open |= bit;
+            }
+        }
+        // flood fill from v through the open vertices.
+        long reached = headNeighbors & open;
+        long frontier = reached;
+        long targetReached = headNeighbors & targetBit;
+        while (frontier != 0) {
+            final int u = Long.numberOfTrailingZeros(frontier);
+            frontier &= frontier - 1;
+            final long next = neighborMasks[u] & open & ~reached;
+            reached |= next;
+            frontier |= next;
+            targetReached |= neighborMasks[u] & targetBit;
+        }
+        if (targetReached == 0) {
+            return 0;
+        }
+        reached |= targetBit;
+        int remaining = Long.bitCount(reached);
+        if (state.colors != null) {
+            final long sameColor = state.colors[v] ? state.colorMask : ~state.colorMask;
+            remaining = boundByColors(remaining, Long.bitCount(reached & sameColor),
+                    Long.bitCount(reached & ~sameColor), (sameColor & targetBit) == 0);
+        }
+        return depth + 1 + remaining;
+    }
+
+    /**
+     * The same bound as {@link #computeUpperBound(int, int, long, LongestPathState)}, by a breadth first search
+     * from v over the unvisited vertices.  Takes time linear in the size of the graph, which the branches it prunes
+     * more than pay for.
+     *
+     * @param v     last vertex of the current path, already visited.
+     * @param depth number of vertices on the current path before v.
+     * @param state state of this search.
+     * @return largest size of path the current path could be extended to.
+     */
+    int computeUpperBound(final int v, final int depth, final LongestPathState state) {
+        final boolean[] visited = state.visited;
+        final int[] degrees = state.degrees;
+        final boolean[] colors = state.colors;
+        final int target = state.target;
+        final int[] queue = state.boundQueue;
+        final int[] marks = state.boundMarks;
+        if (++state.boundGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            state.boundGeneration = 1;
+        }
+        final int mark = state.boundGeneration;
+        boolean targetReached = false;
+        // number of reachable vertices, and how many of them have the color of v.
+        int remaining = 0;
+        int same = 0;
+        int head = 0;
+        int tail = 0;
+        // the neighbors of v come first, since v counts toward their unvisited neighbors.
+        int u = v;
+        int minDegree = 1;
+        while (true) {
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                final int w = targets[e];
+                if (visited[w] || marks[w] == mark) {
+                    continue;
+                }
+                marks[w] = mark;
+                if (w == target) {
+                    targetReached = true;
+                } else if (degrees[w] >= minDegree) {
+                    queue[tail++] = w;
+                } else {
+                    // stranded.
+                    continue;
+                }
+                remaining++;
+                if (colors != null && colors[w] == colors[v]) {
+                    same++;
+                }
+            }
+            if (head == tail) {
+                break;
+            }
+            u = queue[head++];
+            minDegree = 2;
+        }
+        if (!targetReached) {
+            return 0;
+        }
+        if (colors != null) {
+            remaining = boundByColors(remaining, same, remaining - same, colors[target] != colors[v]);
+        }
+        return depth + 1 + remaining;
+    }
+
+    /**
+     * In a two colored graph the vertices after v on a path alternate colors, starting with the other color than
+     * v's, so the color of the target decides whether there is an odd or even number of them.
+     *
+     * @param remaining        number of vertices the rest of the path could pass through, including the target.
+     * @param same             how many of them have the color of the last vertex of the current path.
+     * @param opposite         how many have the other color.
+     * @param isTargetOpposite true if the target has the other color.
+     * @return largest number of vertices the rest of the path could have.
+     */
+    static int boundByColors(final int remaining, final int same, final int opposite, final boolean isTargetOpposite) {
+        final int bound = isTargetOpposite ? Math.min(2 * same + 1, 2 * opposite - 1) : 2 * Math.min(same, opposite);
+        return Math.min(remaining, bound);
+    }
+
+    /**
+     * @return true if every edge from u to v has an edge back from v to u.
+     */
+    boolean isSymmetric() {
+        final CompactGraph reverse = getReverseGraph();
+        return hasEdgesOf(reverse) && reverse.hasEdgesOf(this);
+    }
+
+    /**
+     * @return true if every edge of other, which has the same vertices, is also an edge of this graph.
+     */
+    boolean hasEdgesOf(final CompactGraph other) {
+        final int[] marks = new int[getNumVertices()];
+        Arrays.fill(marks, -1);
+        for (int v = 0; v < getNumVertices(); v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                marks[targets[e]] = v;
+            }
+            for (int e = other.offsets[v]; e < other.offsets[v + 1]; e++) {
+                if (marks[other.targets[e]] != v) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits the vertices of a symmetric graph into two colors so that every edge joins different colors, the way
+     * the squares of a chess board are colored for a knight.
+     *
+     * @return color of each vertex, null if the graph has an odd cycle and can't be two colored.
+     */
+    boolean[] computeTwoColoring() {
+        final int numVertices = getNumVertices();
+        final boolean[] colors = new boolean[numVertices];
+        final boolean[] isColored = new boolean[numVertices];
+        final int[] queue = new int[numVertices];
+        for (int source = 0; source < numVertices; source++) {
+            if (isColored[source]) {
+                continue;
+            }
+            isColored[source] = true;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = source;
+            while (head < tail) {
+                final int u = queue[head++];
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    final int v = targets[e];
+                    if (!isColored[v]) {
+                        isColored[v] = true;
+                        colors[v] = !colors[u];
+                        queue[tail++] = v;
+                    } else if (colors[v] == colors[u]) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Marks v visited and takes it off the unvisited neighbor count of every vertex with an edge to it.
+     */
+    void visit(final int v, final LongestPathState state) {
+        state.visited[v] = true;
+        final CompactGraph reverse = state.reverse;
+        for (int e = reverse.offsets[v]; e < reverse.offsets[v + 1]; e++) {
+            state.degrees[reverse.targets[e]]--;
+        }
+    }
+
+    /**
+     * Undoes {@link #visit(int, LongestPathState)}.
+     */
+    void unvisit(final int v, final LongestPathState state) {
+        state.visited[v] = false;
+        final CompactGraph reverse = state.reverse;
+        for (int e = reverse.offsets[v]; e < reverse.offsets[v + 1]; e++) {
+            state.degrees[reverse.targets[e]]++;
+        }
+    }
+
+    /**
+     * Breadth first search over the edges of this graph.
+     *
+     * @param source vertex to start at.
+     * @return number of edges on the fewest edge path from source to each vertex, -1 if unreachable.
+     */
+    int[] computeHopsFrom(final int source) {
+        final int[] hops = new int[getNumVertices()];
+        Arrays.fill(hops, -1);
+        final int[] queue = new int[getNumVertices()];
+        int head = 0;
+        int tail = 0;
+        hops[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            final int u = queue[head++];
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                final int v = targets[e];
+                if (hops[v] < 0) {
+                    hops[v] = hops[u] + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return hops;
+    }
+
+    /**
+     * get unvisited neighbors of this vertex and order the neighbors according to
+     * Warnsdorf's rule.
+     * <p/>
+     * Neighbors with the same number of onward neighbors are ordered by their distance from the target, as given
+     * by the state's hop preference.  Farthest first keeps the area around the target for the end of the path.
+     *
+     * @param v     vertex id.
+     * @param state state of the search, whose ordered neighbors are written to.
+     * @param from  index of the ordered neighbors to write the first neighbor to.
+     * @return index after the last neighbor written.
+     */
+    int orderNeighborsByFewestNeighbors(final int v, final LongestPathState state, final int from) {
+        final boolean[] visited = state.visited;
+        final int[] degrees = state.degrees;
+        final int[] hopsToTarget = state.hopsToTarget;
+        final int hopPreference = state.hopPreference;
+        final int[] neighbors = state.orderedNeighbors;
+        int to = from;
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            final int u = targets[e];
+            if (visited[u]) {
+                continue;
+            }
+            final int degree = degrees[u];
+            // insertion sort on (degree, -hopPreference * hops to target).
+            int i = to++;
+            while (i > from && (degrees[neighbors[i - 1]] > degree
+                    || degrees[neighbors[i - 1]] == degree && hopPreference * (hopsToTarget[u] - hopsToTarget[neighbors[i - 1]]) > 0)) {
+                neighbors[i] = neighbors[i - 1];
+                i--;
+            }
+            neighbors[i] = u;
+        }
+        return to;
+    }
+
+    /**********************************
+     ********** SHORTEST PATH *********
+     **********************************/
+
+    /**
+     * Computes the shortest path from source to target using Dijkstra's algorithm.  Uses a
+     * priority queue.
+     * <p/>
+     * Vertices are only put in the queue once they are first reached and the search stops as soon as the target
+     * is settled, so the work done depends on the region explored rather than the size of the graph.
+     *
+     * @param source source vertex.
+     * @param target target vertex.
+     * @return Shortest path from source to target.
+     */
+    public Path computeShortestPath(final Vertex source, final Vertex target) {
+        return computeShortestPath(index.indexOf(source), index.indexOf(target));
+    }
+
+    /**
+     * @see #computeShortestPath(Vertex, Vertex)
+     */
+    public Path computeShortestPath(final int source, final int target) {
+        return computeShortestPath(source, target, new SearchContext(getNumVertices()));
+    }
+
+    /**
+     * Computes the shortest path using the given scratch space instead of allocating new arrays.
+     *
+     * @param source  source vertex.
+     * @param target  target vertex.
+     * @param context scratch space with room for every vertex of this graph.
+     * @return Shortest path from source to target.
+     * @see #computeShortestPath(Vertex, Vertex)
+     */
+    public Path computeShortestPath(final int source, final int target, final SearchContext context) {
+        final boolean isReached = maxIntegerWeight >= 0 ?
+                searchWithBuckets(source, target, context) :
+                searchWithHeap(source, target, context);
+        if (!isReached) {
+            return new Path(Lists.<Vertex>newArrayList(), Graph.POSITIVE_INFINITY);
+        }
+        return toPath(tracePath(context.predecessors, source, target), context.distances[target]);
+    }
+
+    /**
+     * Dijkstra's algorithm with a Fibonacci heap.  Works for any non-negative weights.
+     */
+    Path computeShortestPathWithHeap(final int source, final int target) {
+        final SearchContext context = new SearchContext(getNumVertices());
+        if (!searchWithHeap(source, target, context)) {
+            return new Path(Lists.<Vertex>newArrayList(), Graph.POSITIVE_INFINITY);
+        }
+        return toPath(tracePath(context.predecessors, source, target), context.distances[target]);
+    }
+
+    /**
+     * Settles vertices in order of their distance from the source using a Fibonacci heap, until the target is
+     * settled.
+     *
+     * @param source  source vertex.
+     * @param target  vertex to stop at, or -1 to settle every reachable vertex.
+     * @param context scratch space, left holding the distance and predecessor of every reached vertex.
+     * @return true if the target was reached.
+     */
+    boolean searchWithHeap(final int source, final int target, final SearchContext context) {
+        final FibonacciHeap<Integer> priorityQueue = new FibonacciHeap<Integer>();
+        // entry in the heap of each vertex, null until the vertex is first reached.
+        // useful for updating an entry's priority in the heap
+        final FibonacciHeap.Entry<Integer>[] entryPointers = context.entryPointers;
+        context.reset();
+
+        context.setDistance(source, 0.0, -1);
+        entryPointers[source] = priorityQueue.enqueue(source, 0.0);
+        while (!priorityQueue.isEmpty()) {
+            final int u = priorityQueue.dequeueMin().getValue();
+            final double distanceToU = context.distances[u];
+            if (u == target) {
+                return true;
+            }
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                final int v = targets[e];
+                final double distanceThroughUAndV = distanceToU + weights[e];
+                if (distanceThroughUAndV < context.getDistance(v)) {
+                    // a settled vertex never gets here since weights aren't negative.
+                    context.setDistance(v, distanceThroughUAndV, u);
+                    if (entryPointers[v] == null) {
+                        // first time v is reached
+                        entryPointers[v] = priorityQueue.enqueue(v, distanceThroughUAndV);
+                    } else {
+                        priorityQueue.decreaseKey(entryPointers[v], distanceThroughUAndV);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the shortest path from source to target using A* search.  Vertices are expanded in order of their
+     * distance from the source plus the heuristic's estimate of their distance to the target, so the search heads
+     * towards the target instead of expanding evenly in every direction.
+     *
+     * @param source    source vertex.
+     * @param target    target vertex.
+     * @param heuristic admissible estimate of the distance to the target.
+     * @return Shortest path from source to target.
+     */
+    public Path computeShortestPath(final Vertex source, final Vertex target, final Heuristic heuristic) {
+        return computeShortestPath(index.indexOf(source), index.indexOf(target), heuristic);
+    }
+
+    /**
+     * @see #computeShortestPath(Vertex, Vertex, Heuristic)
+     */
+    public Path computeShortestPath(final int source, final int target, final Heuristic heuristic) {
+        return computeShortestPath(source, target, heuristic, new SearchContext(getNumVertices()));
+    }
+
+    /**
+     * Computes the shortest path using A* search in the given scratch space instead of allocating new arrays.
+     *
+     * @param context scratch space with room for every vertex of this graph.
+     * @see #computeShortestPath(Vertex, Vertex, Heuristic)
+     */
+    public Path computeShortestPath(final int source, final int target, final Heuristic heuristic, final SearchContext context) {
+        final FibonacciHeap<Integer> priorityQueue = new FibonacciHeap<Integer>();
+        // entry in the heap of each vertex, null until the vertex is reached or once it is expanded.
+        final FibonacciHeap.Entry<Integer>[] entryPointers = context.entryPointers;
+        // heuristic estimate of each vertex, computed once when the vertex is first reached.
+        final double[] estimates = context.getEstimates();
+        context.reset();
+
+        context.setDistance(source, 0.0, -1);
+        entryPointers[source] = priorityQueue.enqueue(source, heuristic.estimate(source, target));
+        while (!priorityQueue.isEmpty()) {
+            final int u = priorityQueue.dequeueMin().getValue();
+            entryPointers[u] = null;
+            final double distanceToU = context.distances[u];
+            if (u == target) {
+                return toPath(tracePath(context.predecessors, source, target), distanceToU);
+            }
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                final int v = targets[e];
+                final double distanceThroughUAndV = distanceToU + weights[e];
+                if (distanceThroughUAndV >= context.getDistance(v)) {
+                    continue;
+                }
+                if (!context.isReached(v)) {
+                    estimates[v] = heuristic.estimate(v, target);
+                }
+                context.setDistance(v, distanceThroughUAndV, u);
+                final double priority = distanceThroughUAndV + estimates[v];
+                if (entryPointers[v] == null) {
+                    // first time v is reached, or v was expanded before and has to be expanded again
+                    // because the heuristic isn't consistent.
+                    entryPointers[v] = priorityQueue.enqueue(v, priority);
+                } else {
+                    priorityQueue.decreaseKey(entryPointers[v], priority);
+                }
+            }
+        }
+        return new Path(Lists.<Vertex>newArrayList(), Graph.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Computes the shortest path from source to target using bidirectional Dijkstra.  One search runs forward from
+     * the source over this graph and one runs backward from the target over the reverse graph, always advancing
+     * the side whose next vertex is closer.  Every edge relaxed into a vertex labelled by the other side is a
+     * candidate path, and the search stops once the two queue minimums add up to at least the best candidate.
+     * <p/>
+     * Exact for any non-negative weights, including the asymmetric weights of landing on lava or water.
+     *
+     * @param source source vertex.
+     * @param target target vertex.
+     * @return Shortest path from source to target.
+     */
+    public Path computeShortestPathBidirectional(final Vertex source, final Vertex target) {
+        return computeShortestPathBidirectional(index.indexOf(source), index.indexOf(target));
+    }
+
+    /**
+     * @see #computeShortestPathBidirectional(Vertex, Vertex)
+     */
+    public Path computeShortestPathBidirectional(final int source, final int target) {
+        return computeShortestPathBidirectional(source, target, new SearchContext(getNumVertices()), new SearchContext(getNumVertices()));
+    }
+
+    /**
+     * Computes the shortest path using bidirectional Dijkstra in the given scratch space instead of allocating new
+     * arrays.
+     *
+     * @param forward  scratch space of the search from the source, with room for every vertex of this graph.
+     * @param backward scratch space of the search from the target.  Must be a different context from forward.
+     * @see #computeShortestPathBidirectional(Vertex, Vertex)
+     */
+    public Path computeShortestPathBidirectional(final int source, final int target,
+                                                 final SearchContext forward, final SearchContext backward) {
+        if (source == target) {
+            return toPath(new int[]{source}, 0.0);
+        }
+        final CompactGraph reverse = getReverseGraph();
+        final FibonacciHeap<Integer> forwardQueue = new FibonacciHeap<Integer>();
+        final FibonacciHeap<Integer> backwardQueue = new FibonacciHeap<Integer>();
+        // the backward search's predecessors are the vertices after each vertex on the path to the target.
+        forward.reset();
+        backward.reset();
+
+        forward.setDistance(source, 0.0, -1);
+        backward.setDistance(target, 0.0, -1);
+        forward.entryPointers[source] = forwardQueue.enqueue(source, 0.0);
+        backward.entryPointers[target] = backwardQueue.enqueue(target, 0.0);
+        // weight of the best path found so far and the vertex the two halves meet at.
+        double bestPathLength = Graph.POSITIVE_INFINITY;
+        int meeting = -1;
+
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            final double forwardMin = forwardQueue.min().getPriority();
+            final double backwardMin = backwardQueue.min().getPriority();
+            if (forwardMin + backwardMin >= bestPathLength) {
+                // no path through an unsettled vertex can be shorter.
+                break;
+            }
+            final boolean isForward = forwardMin <= backwardMin;
+            final CompactGraph graph = isForward ? this : reverse;
+            final FibonacciHeap<Integer> queue = isForward ? forwardQueue : backwardQueue;
+            final SearchContext context = isForward ? forward : backward;
+            final SearchContext otherContext = isForward ? backward : forward;
+            final FibonacciHeap.Entry<Integer>[] entries = context.entryPointers;
+
+            final FibonacciHeap.Entry<Integer> uEntry = queue.dequeueMin();
+            final int u = uEntry.getValue();
+            final double distanceToU = uEntry.getPriority();
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                final int v = graph.targets[e];
+                final double distanceThroughUAndV = distanceToU + graph.weights[e];
+                if (distanceThroughUAndV < context.getDistance(v)) {
+                    context.setDistance(v, distanceThroughUAndV, u);
+                    if (entries[v] == null) {
+                        entries[v] = queue.enqueue(v, distanceThroughUAndV);
+                    } else {
+                        queue.decreaseKey(entries[v], distanceThroughUAndV);
+                    }
+                }
+                final double distanceThroughV = context.getDistance(v) + otherContext.getDistance(v);
+                if (distanceThroughV < bestPathLength) {
+                    bestPathLength = distanceThroughV;
+                    meeting = v;
+                }
+            }
+        }
+        if (meeting < 0) {
+            return new Path(Lists.<Vertex>newArrayList(), Graph.POSITIVE_INFINITY);
+        }
+        // source .. meeting from the forward search, then meeting .. target from the backward search.
+        final int[] successors = backward.predecessors;
+        final int[] firstHalf = tracePath(forward.predecessors, source, meeting);
+        int length = firstHalf.length;
+        for (int v = meeting; v != target; v = successors[v]) {
+            length++;
+        }
+        final int[] path = Arrays.copyOf(firstHalf, length);
+        int i = firstHalf.length;
+        for (int v = meeting; v != target; v = successors[v]) {
+            path[i++] = successors[v];
+        }
+        return toPath(path, bestPathLength);
+    }
+
+    /**
+     * Dijkstra's algorithm with a bucket queue (Dial's algorithm).  Only valid when every weight is a small
+     * non-negative integer.
+     */
+    Path computeShortestPathWithBuckets(final int source, final int target) {
+        final SearchContext context = new SearchContext(getNumVertices());
+        if (!searchWithBuckets(source, target, context)) {
+            return new Path(Lists.<Vertex>newArrayList(), Graph.POSITIVE_INFINITY);
+        }
+        return toPath(tracePath(context.predecessors, source, target), context.distances[target]);
+    }
+
+    /**
+     * Settles vertices in order of their distance from the source using a bucket queue, until the target is
+     * settled.  Vertices are pushed again when their distance improves and stale entries are skipped.
+     *
+     * @see #searchWithHeap(int, int, SearchContext)
+     */
+    boolean searchWithBuckets(final int source, final int target, final SearchContext context) {
+        final BucketQueue queue = context.getBucketQueue(maxIntegerWeight);
+        context.reset();
+
+        context.setDistance(source, 0.0, -1);
+        queue.push(source, 0);
+        while (!queue.isEmpty()) {
+            final int u = queue.pop();
+            final int distanceToU = queue.getCurrentKey();
+            if (distanceToU != context.distances[u]) {
+                // stale entry, u was pushed again with a shorter distance.
+                continue;
+            }
+            if (u == target) {
+                return true;
+            }
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                final int v = targets[e];
+                final int distanceThroughUAndV = distanceToU + (int) weights[e];
+                if (distanceThroughUAndV < context.getDistance(v)) {
+                    context.setDistance(v, distanceThroughUAndV, u);
+                    queue.push(v, distanceThroughUAndV);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the shortest paths from the source to every vertex with a single run of Dijkstra's algorithm.
+     *
+     * @param source source vertex.
+     * @return distances and predecessors of every vertex, from which the shortest path to any vertex can be read.
+     */
+    public ShortestPathTree computeShortestPathTree(final Vertex source) {
+        return computeShortestPathTree(index.indexOf(source));
+    }
+
+    /**
+     * @see #computeShortestPathTree(Vertex)
+     */
+    public ShortestPathTree computeShortestPathTree(final int source) {
+        final SearchContext context = new SearchContext(getNumVertices());
+        if (maxIntegerWeight >= 0) {
+            searchWithBuckets(source, -1, context);
+        } else {
+            searchWithHeap(source, -1, context);
+        }
+        final double[] distances = context.distances;
+        for (int v = 0; v < distances.length; v++) {
+            if (!context.isReached(v)) {
+                distances[v] = Graph.POSITIVE_INFINITY;
+            }
+        }
+        return new ShortestPathTree(this, source, distances, context.predecessors);
+    }
+
+    /**
+     * Follows the predecessors back from target to source.
+     *
+     * @return ids from source to target.
+     */
+    static int[] tracePath(final int[] predecessors, final int source, final int target) {
+        int length = 1;
+        for (int v = target; v != source; v = predecessors[v]) {
+            length++;
+        }
+        final int[] path = new int[length];
+        int v = target;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = v;
+            v = predecessors[v];
+        }
+        return path;
+    }
+}
@@ -0,0 +1,57 @@
+package com.blakec.graph;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time limit and cancellation token for a long running search.
+ * <p/>
+ * A search checks {@link #hasExpired()} every so often and, once it has, stops and returns the best it found so
+ * far.  Any thread may cancel a deadline.
+ */
+public class Deadline {
+    /**
+     * {@link System#nanoTime()} at which the deadline expires.  Only meaningful if hasTimeLimit.
+     */
+    final long expiresAtNanos;
+    final boolean hasTimeLimit;
+    private volatile boolean cancelled = false;
+
+    Deadline(final boolean hasTimeLimit, final long expiresAtNanos) {
+        this.hasTimeLimit = hasTimeLimit;
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /**
+     * @return deadline that only expires if it is cancelled.
+     */
+    public static Deadline none() {
+        return new Deadline(false, 0);
+    }
+
+    /**
+     * @param duration time from now until the deadline expires.
+     * @param unit     unit of the duration.
+     * @return deadline that expires after the duration or when it is cancelled.
+     */
+    public static Deadline after(final long duration, final TimeUnit unit) {
+        return new Deadline(true, System.nanoTime() + unit.toNanos(duration));
+    }
+
+    /**
+     * Expires the deadline now.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if the deadline was cancelled or its time is up.
+     */
+    public boolean hasExpired() {
+        return cancelled || hasTimeLimit && System.nanoTime() - expiresAtNanos >= 0;
+    }
+}
@@ -6,7 +6,6 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -14,6 +13,9 @@ import java.util.Set;
 /**
  * Graph class that has weighted directed edges.
  * <p/>
+ * Searches keep their state per call, so once the edges are added any number of threads can search the graph at
+ * once.  Adding edges while searching is not safe.
+ * <p/>
  * Has the ability to compute longest path via depth first search.
  * <p/>
  * Has the ability to compute shortest path via Dijkstra's Algorithm and priority queue.
@@ -21,7 +23,6 @@ import java.util.Set;
 public class Graph {
     public static final double POSITIVE_INFINITY = Double.MAX_VALUE;
     final Map<Vertex, Set<Edge>> graph = Maps.newHashMap();
-    int numPathsSeen = 0;
 
     /*****************************
      ********** CREATION *********
@@ -53,6 +54,26 @@ public class Graph {
         return graph.get(v);
     }
 
+    /**
+     * Packs this graph into a {@link CompactGraph}.  Vertex ids are handed out in iteration order of this graph.
+     *
+     * @return compact copy of this graph.
+     */
+    public CompactGraph toCompactGraph() {
+        final MapVertexIndex index = new MapVertexIndex();
+        for (final Vertex v : graph.keySet()) {
+            index.add(v);
+        }
+        final CompactGraph.Builder builder = new CompactGraph.Builder(index);
+        for (final Map.Entry<Vertex, Set<Edge>> entry : graph.entrySet()) {
+            final int start = index.indexOf(entry.getKey());
+            for (final Edge e : entry.getValue()) {
+                builder.addEdge(start, index.indexOf(e.getTarget()), e.getWeight());
+            }
+        }
+        return builder.build();
+    }
+
 
     /**********************************
      ********** LONGEST PATH *********
@@ -75,67 +96,28 @@ public class Graph {
      * @throws Exception
      */
     public Path computeLongestPath(final Vertex source, final Vertex target, int maxPathSize) throws Exception {
-        final Set<Vertex> seen = Sets.newHashSet();
-        final List<Vertex> longestPath = Lists.newArrayList();
-        final List<Vertex> currentPath = Lists.newArrayList();
-        computeLongestPathRecursive(source, target, seen, longestPath, currentPath, maxPathSize);
-        return new Path(longestPath, longestPath.size() - 1);
+        return computeLongestPath(source, target, maxPathSize, Deadline.none()).getPath();
     }
 
     /**
-     * Recursive part of compute longest path.
+     * Computes the longest path from source to target, stopping once the deadline expires.
+     * <p/>
+     * The graph is packed into a {@link CompactGraph} and searched there, which keeps the unvisited degree of every
+     * vertex up to date as the search moves rather than counting and sorting the neighbors of every vertex it
+     * visits, and prunes branches that can't beat the longest path found so far.
      *
-     * @param v           vertex to start at.
+     * @param source      source vertex.
      * @param target      target vertex.
-     * @param visited     nodes we have seen so far and shouldn't be traversed
-     * @param longestPath current longest path.
-     * @param currentPath current path we are on.
      * @param maxPathSize upper bound of path size in this graph.
+     * @param deadline    when to give up and return the longest path found so far.
+     * @return longest path found and whether the search ran to the end.
+     * @see CompactGraph#computeLongestPath(Vertex, Vertex, int, Deadline)
      */
-    public void computeLongestPathRecursive(final Vertex v,
-                                            final Vertex target,
-                                            final Set<Vertex> visited,
-                                            final List<Vertex> longestPath,
-                                            final List<Vertex> currentPath,
-                                            final int maxPathSize) throws Exception {
-        // add vertex to set of seen
-        visited.add(v);
-        // add vertex to current path
-        currentPath.add(v);
-        // if the vertex is the target, we have a path
-        if (target.equals(v)) {
-            // increase number of paths seen, just for diagnostics
-            numPathsSeen++;
-            if (currentPath.size() > longestPath.size()) {
-                // we reached the target.  this is a path that has a larger size than current largest
-                longestPath.clear();
-                longestPath.addAll(currentPath);
-            }
-            // backtrack vertex off current path
-            currentPath.remove(v);
-            // backtrack vertex off seen set.
-            visited.remove(v);
-            return;
-        }
-
-        // get neighbors of this vertex
-        // it will not include seen neighbors and will order the neighbors according to
-        // Warnsdorf's rule.
-        List<Edge> unvisitedNeighbors = getNeighborsSortedByFewestNeighbors(v, visited);
-        for (final Edge e : unvisitedNeighbors) {
-            // for each neighbor
-            // find the longest path from it to the target
-            final Vertex neighbor = e.getTarget();
-            computeLongestPathRecursive(neighbor, target, visited, longestPath, currentPath, maxPathSize);
-            if (longestPath.size() == maxPathSize) {
-                // if we have already achieved a path with max possible size, return.
-                return;
-            }
-        }
-        // backtrack vertex off current path
-        currentPath.remove(v);
-        // backtrack vertex off seen set.
-        visited.remove(v);
+    public LongestPathResult computeLongestPath(final Vertex source,
+                                                final Vertex target,
+                                                final int maxPathSize,
+                                                final Deadline deadline) throws Exception {
+        return toCompactGraph().computeLongestPath(source, target, maxPathSize, deadline);
     }
 
     /**
@@ -168,24 +150,41 @@ public class Graph {
      * @return
      */
     public List<Edge> getNeighborsSortedByFewestNeighbors(final Vertex v, final Set<Vertex> seen) {
-        Set<Edge> unvisitedNeighbors = getUnvisitedNeighbors(v, seen);
-        List<Edge> sortedNeighbors = Lists.newArrayList(unvisitedNeighbors);
-        sortedNeighbors.sort(new Comparator<Edge>() {
-            @Override
-            public int compare(Edge o1, Edge o2) {
-                Vertex v1 = o1.getTarget();
-                Vertex v2 = o2.getTarget();
-                int numNeighbors1 = Graph.this.getUnvisitedNeighbors(v1, seen).size();
-                int numNeighbors2 = Graph.this.getUnvisitedNeighbors(v2, seen).size();
-                // return 1 if v2 has fewer neighbors than v1
-                // return 0 if equal
-                // return -1 if v1 has fewer neighbors than v2
-                return Integer.compare(numNeighbors1, numNeighbors2);
+        final List<Edge> sortedNeighbors = Lists.newArrayList();
+        // number of unvisited neighbors of each sorted neighbor, counted once rather than on every comparison.
+        final int[] degrees = new int[getEdges(v).size()];
+        for (final Edge e : getEdges(v)) {
+            if (seen.contains(e.getTarget())) {
+                continue;
+            }
+            final int degree = countUnvisitedNeighbors(e.getTarget(), seen);
+            // insertion sort on degree
+            int i = sortedNeighbors.size();
+            while (i > 0 && degrees[i - 1] > degree) {
+                degrees[i] = degrees[i - 1];
+                i--;
             }
-        });
+            degrees[i] = degree;
+            sortedNeighbors.add(i, e);
+        }
         return sortedNeighbors;
     }
 
+    /**
+     * @param v    vertex.
+     * @param seen vertices that have already been visited.
+     * @return number of neighbors of v that haven't been visited.
+     */
+    public int countUnvisitedNeighbors(final Vertex v, final Set<Vertex> seen) {
+        int count = 0;
+        for (final Edge e : getEdges(v)) {
+            if (!seen.contains(e.getTarget())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**********************************
      ********** SHORTEST PATH *********
      **********************************/
@@ -194,79 +193,20 @@ public class Graph {
     /**
      * Computes the shortest path from source to target using Dijkstra's algorithm.  Uses a
      * priority queue.
+     * <p/>
+     * The graph is packed into a {@link CompactGraph} and searched there, which only puts vertices in the queue once
+     * they are reached and stops as soon as the target is settled, instead of queueing every vertex of the graph up
+     * front.
      *
      * @param source source vertex.
      * @param target target vertex.
      * @return Shortest path from source to target.
+     * @see CompactGraph#computeShortestPath(Vertex, Vertex)
      */
     public Path computeShortestPath(final Vertex source, final Vertex target) {
-        final FibonacciHeap<Vertex> priorityQueue = new FibonacciHeap<Vertex>();
-        // mapping from vertex to entry in the heap.
-        // useful for updating an entry's priority in the heap
-        final Map<Vertex, FibonacciHeap.Entry<Vertex>> entryPointers = Maps.newHashMap();
-        // mapping of node in the optimal path to the not it points to.
-        final Map<Vertex, Vertex> optimalPathVerticies = Maps.newHashMap();
-
-        for (final Vertex v : graph.keySet()) {
-            // iterate through all vertices
-            // initialize their priority to 0 if source node,  pos infinity otherwise
-            // also store a pointer from the vertex to its entry in the queue.
-            double priority = v.equals(source) ? 0.0 : POSITIVE_INFINITY;
-            final FibonacciHeap.Entry<Vertex> entry = priorityQueue.enqueue(v, priority);
-            entryPointers.put(v, entry);
-        }
-
-        double optimalPathLength = POSITIVE_INFINITY;
-
-        while (!priorityQueue.isEmpty()) {
-            // pop of highest priority vertex in queue
-            // priority here represents shortest known distance from that vertex to the source
-            final FibonacciHeap.Entry<Vertex> uEntry = priorityQueue.dequeueMin();
-            final Vertex u = uEntry.getValue();
-            final double distanceToU = uEntry.getPriority();
-            if (target.equals(u)) {
-                // we have reached our target
-                optimalPathLength = distanceToU;
-                // we are done
-                break;
-            }
-
-            for (final Edge e : getEdges(u)) {
-                // look at neighbors of this vertex
-                // see if going through u->v
-                // creates a shorter path to target
-                // than we currently have through v
-                final Vertex v = e.getTarget();
-                final double weight = e.getWeight();
-                final double distanceThroughUAndV = distanceToU + weight;
-
-                final FibonacciHeap.Entry<Vertex> vEntry = entryPointers.get(v);
-                final double minDistanceThroughV = vEntry.getPriority();
-
-                if (distanceThroughUAndV < minDistanceThroughV) {
-                    // going from u through v results in a shorter path
-                    // update the priority of this node in the queue
-                    priorityQueue.decreaseKey(vEntry, distanceThroughUAndV);
-                    // store that v <- us is the best path from target to source we have so far
-                    optimalPathVerticies.put(v, u);
-                }
-            }
-        }
-        if (optimalPathLength == POSITIVE_INFINITY) {
+        if (!graph.containsKey(source) || !graph.containsKey(target)) {
             return new Path(Lists.<Vertex>newArrayList(), POSITIVE_INFINITY);
         }
-        // add target to the path
-        final List<Vertex> optimalPath = Lists.newArrayList();
-        optimalPath.add(target);
-
-        Vertex next = optimalPathVerticies.get(target);
-        while (!source.equals(next)) {
-            optimalPath.add(0, next);
-            next = optimalPathVerticies.get(next);
-        }
-        optimalPath.add(0, source);
-
-        // reverse since original was path from target to source, instead of source to target
-        return new Path(optimalPath, optimalPathLength);
+        return toCompactGraph().computeShortestPath(source, target);
     }
 }
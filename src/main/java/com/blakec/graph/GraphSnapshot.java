@@ -0,0 +1,170 @@
+package com.blakec.graph;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot of a {@link CompactGraph}, so a graph that takes long to generate can be loaded instead.
+ * <p/>
+ * Format, big endian: magic int, version short, source checksum long, vertex count int, edge count int, weight
+ * encoding byte, then the offsets, the targets and the weights of the compressed sparse rows.  The source checksum
+ * identifies whatever the graph was generated from, so a snapshot of a different source is rejected.  Weights are
+ * written as one unsigned byte each when they are all small integers, as on a board, and as doubles otherwise.
+ * <p/>
+ * Vertices are stored by id only.  The {@link VertexIndex} mapping them back to vertices is supplied on load.
+ */
+public class GraphSnapshot {
+    static final int MAGIC = 0x4b475246;
+    static final short VERSION = 1;
+    static final byte DOUBLE_WEIGHTS = 0;
+    static final byte BYTE_WEIGHTS = 1;
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Writes a snapshot of the graph.
+     *
+     * @param graph          graph to write.
+     * @param sourceChecksum checksum of what the graph was generated from.
+     * @param out            stream to write to.  Not closed.
+     */
+    public static void write(final CompactGraph graph, final long sourceChecksum, final OutputStream out) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        final boolean hasByteWeights = graph.maxIntegerWeight >= 0;
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putLong(sourceChecksum);
+        buffer.putInt(graph.getNumVertices());
+        buffer.putInt(graph.getNumEdges());
+        buffer.put(hasByteWeights ? BYTE_WEIGHTS : DOUBLE_WEIGHTS);
+        writeInts(graph.offsets, buffer, out);
+        writeInts(graph.targets, buffer, out);
+        for (final double weight : graph.weights) {
+            if (buffer.remaining() < 8) {
+                flush(buffer, out);
+            }
+            if (hasByteWeights) {
+                buffer.put((byte) weight);
+            } else {
+                buffer.putDouble(weight);
+            }
+        }
+        flush(buffer, out);
+    }
+
+    static void writeInts(final int[] values, final ByteBuffer buffer, final OutputStream out) throws IOException {
+        for (final int value : values) {
+            if (buffer.remaining() < 4) {
+                flush(buffer, out);
+            }
+            buffer.putInt(value);
+        }
+    }
+
+    static void flush(final ByteBuffer buffer, final OutputStream out) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+
+    /**
+     * Reads a snapshot from a file by memory mapping it.  The arrays are copied out of the mapping in bulk, no
+     * edge is added one at a time.
+     *
+     * @param file           snapshot file.
+     * @param index          mapping of the vertex ids of the graph.
+     * @param sourceChecksum checksum of what the graph must have been generated from.
+     * @return graph of the snapshot.
+     * @throws IOException if the file isn't a valid snapshot, or is a snapshot of a different source.
+     */
+    public static CompactGraph read(final Path file, final VertexIndex index, final long sourceChecksum) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Graph snapshot " + file + " is larger than 2GB.");
+            }
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), index, sourceChecksum);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @see #read(Path, VertexIndex, long)
+     */
+    public static CompactGraph read(final ByteBuffer in, final VertexIndex index, final long sourceChecksum) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot.");
+            }
+            final short version = in.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported graph snapshot version " + version + ".");
+            }
+            if (in.getLong() != sourceChecksum) {
+                throw new IOException("Graph snapshot was generated from a different source.");
+            }
+            final int numVertices = in.getInt();
+            final int numEdges = in.getInt();
+            final byte weightEncoding = in.get();
+            if (numVertices != index.size() || numEdges < 0) {
+                throw new IOException("Graph snapshot has " + numVertices + " vertices, expected " + index.size() + ".");
+            }
+            // check the counts against the size of the snapshot before allocating arrays for them.
+            final long weightSize = weightEncoding == BYTE_WEIGHTS ? 1 : 8;
+            if (4L * (numVertices + 1) + (4 + weightSize) * numEdges > in.remaining()) {
+                throw new IOException("Graph snapshot is truncated.");
+            }
+            final int[] offsets = new int[numVertices + 1];
+            final int[] targets = new int[numEdges];
+            final double[] weights = new double[numEdges];
+            in.asIntBuffer().get(offsets);
+            in.position(in.position() + 4 * offsets.length);
+            in.asIntBuffer().get(targets);
+            in.position(in.position() + 4 * targets.length);
+            if (weightEncoding == BYTE_WEIGHTS) {
+                for (int e = 0; e < numEdges; e++) {
+                    weights[e] = in.get() & 0xff;
+                }
+            } else if (weightEncoding == DOUBLE_WEIGHTS) {
+                in.asDoubleBuffer().get(weights);
+            } else {
+                throw new IOException("Graph snapshot has unknown weight encoding " + weightEncoding + ".");
+            }
+            validate(offsets, targets, weights);
+            return new CompactGraph(index, offsets, targets, weights);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Graph snapshot is truncated.");
+        }
+    }
+
+    /**
+     * Checks the rows are in order, every edge is to a vertex of the graph and every weight is a finite
+     * non-negative cost, so a corrupt snapshot can't break searches later.
+     */
+    static void validate(final int[] offsets, final int[] targets, final double[] weights) throws IOException {
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != targets.length) {
+            throw new IOException("Graph snapshot rows don't cover its edges.");
+        }
+        for (int v = 0; v + 1 < offsets.length; v++) {
+            if (offsets[v] > offsets[v + 1]) {
+                throw new IOException("Graph snapshot rows are out of order at vertex " + v + ".");
+            }
+        }
+        final int numVertices = offsets.length - 1;
+        for (final int target : targets) {
+            if (target < 0 || target >= numVertices) {
+                throw new IOException("Graph snapshot has an edge to unknown vertex " + target + ".");
+            }
+        }
+        for (final double weight : weights) {
+            // also false for NaN.
+            if (!(weight >= 0 && weight < Double.POSITIVE_INFINITY)) {
+                throw new IOException("Graph snapshot has invalid edge weight " + weight + ".");
+            }
+        }
+    }
+}
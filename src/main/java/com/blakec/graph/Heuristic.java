@@ -0,0 +1,27 @@
+package com.blakec.graph;
+
+/**
+ * Estimate of the remaining cost from a vertex to a target, used to guide A* search.
+ * <p/>
+ * The estimate must never exceed the cost of the shortest path from the vertex to the target (admissible) for A*
+ * to return shortest paths.
+ */
+public interface Heuristic {
+
+    /**
+     * @param from   vertex the estimate is for.
+     * @param target target vertex.
+     * @return lower bound of the cost of getting from the vertex to the target.
+     */
+    double estimate(Vertex from, Vertex target);
+
+    /**
+     * Same estimate for vertices given by their ids in the searched graph, so A* can estimate every vertex it reaches
+     * without looking the vertex up.
+     *
+     * @param from   id of the vertex the estimate is for.
+     * @param target id of the target vertex.
+     * @return lower bound of the cost of getting from the vertex to the target.
+     */
+    double estimate(int from, int target);
+}
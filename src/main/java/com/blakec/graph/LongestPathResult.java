@@ -0,0 +1,47 @@
+package com.blakec.graph;
+
+/**
+ * Outcome of a longest path search that may have been stopped by a {@link Deadline}.
+ */
+public class LongestPathResult {
+    final Path path;
+    final boolean hasMaxPathSize;
+    final boolean complete;
+
+    public LongestPathResult(final Path path, final boolean hasMaxPathSize, final boolean complete) {
+        this.path = path;
+        this.hasMaxPathSize = hasMaxPathSize;
+        this.complete = complete;
+    }
+
+    /**
+     * @return longest path found.  Empty if the search stopped before finding any path.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return true if the path has the max path size the search was given, so no longer path exists.
+     */
+    public boolean hasMaxPathSize() {
+        return hasMaxPathSize;
+    }
+
+    /**
+     * @return true if the search ran to the end, so the path is the longest there is.  False if the deadline
+     * expired first.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return "LongestPathResult{" +
+                "path=" + path +
+                ", hasMaxPathSize=" + hasMaxPathSize +
+                ", complete=" + complete +
+                '}';
+    }
+}
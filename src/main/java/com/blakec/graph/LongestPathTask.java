@@ -0,0 +1,109 @@
+package com.blakec.graph;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exhaustive longest path search over every path that starts with a given prefix, run on a fork join pool.
+ * <p/>
+ * Until the prefix has {@link CompactGraph#PARALLEL_SPLIT_DEPTH} vertices after the source, a task forks a task for
+ * each way to extend it by one vertex.  Longer prefixes are searched depth first on the worker thread.  Every task
+ * shares the size of the longest path found so far, so they prune against each other's paths and stop as soon as
+ * one of them finds a path of the max size.
+ */
+class LongestPathTask extends RecursiveTask<CompactGraph.LongestPathState> {
+    private static final long serialVersionUID = 1L;
+    final CompactGraph graph;
+    /**
+     * properties of the graph, computed once and shared by every task.
+     */
+    final CompactGraph.LongestPathProperties properties;
+    /**
+     * vertices every path this task searches starts with.
+     */
+    final int[] prefix;
+    final int target;
+    final int[] hopsToTarget;
+    final int maxPathSize;
+    final AtomicInteger bestPathSize;
+    final Deadline deadline;
+    /**
+     * true once this task or one of its subtasks stopped because the deadline expired.
+     */
+    boolean isExpired = false;
+
+    LongestPathTask(final CompactGraph graph,
+                    final CompactGraph.LongestPathProperties properties,
+                    final int[] prefix,
+                    final int target,
+                    final int[] hopsToTarget,
+                    final int maxPathSize,
+                    final AtomicInteger bestPathSize,
+                    final Deadline deadline) {
+        this.graph = graph;
+        this.properties = properties;
+        this.prefix = prefix;
+        this.target = target;
+        this.hopsToTarget = hopsToTarget;
+        this.maxPathSize = maxPathSize;
+        this.bestPathSize = bestPathSize;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return state of the search that found the longest path, null if none of them reached the target.
+     */
+    @Override
+    protected CompactGraph.LongestPathState compute() {
+        if (bestPathSize.get() == maxPathSize) {
+            // another task already found a path of the max size.
+            return null;
+        }
+        if (deadline.hasExpired()) {
+            isExpired = true;
+            return null;
+        }
+        final int v = prefix[prefix.length - 1];
+        if (prefix.length > CompactGraph.PARALLEL_SPLIT_DEPTH || v == target) {
+            final CompactGraph.LongestPathState state = new CompactGraph.LongestPathState(graph, properties, target,
+                    hopsToTarget, 1, maxPathSize, 0, Long.MAX_VALUE, deadline, bestPathSize);
+            graph.search(prefix, state);
+            isExpired = state.isExpired;
+            return state.longestPathSize > 0 ? state : null;
+        }
+
+        final List<LongestPathTask> tasks = Lists.newArrayList();
+        for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++) {
+            final int u = graph.targets[e];
+            if (isOnPrefix(u)) {
+                continue;
+            }
+            final int[] extended = Arrays.copyOf(prefix, prefix.length + 1);
+            extended[prefix.length] = u;
+            tasks.add(new LongestPathTask(graph, properties, extended, target, hopsToTarget, maxPathSize, bestPathSize, deadline));
+        }
+        invokeAll(tasks);
+        CompactGraph.LongestPathState best = null;
+        for (final LongestPathTask task : tasks) {
+            isExpired |= task.isExpired;
+            final CompactGraph.LongestPathState state = task.join();
+            if (state != null && (best == null || state.longestPathSize > best.longestPathSize)) {
+                best = state;
+            }
+        }
+        return best;
+    }
+
+    boolean isOnPrefix(final int u) {
+        for (final int w : prefix) {
+            if (w == u) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,47 @@
+package com.blakec.graph;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vertex index for arbitrary vertices.  Ids are handed out in the order vertices are added.
+ */
+class MapVertexIndex implements VertexIndex {
+    final List<Vertex> vertices = Lists.newArrayList();
+    final Map<Vertex, Integer> ids = Maps.newHashMap();
+
+    /**
+     * Adds the vertex to the index if it isn't already in it.
+     *
+     * @param v vertex
+     * @return id of the vertex.
+     */
+    int add(final Vertex v) {
+        final Integer id = ids.get(v);
+        if (id != null) {
+            return id;
+        }
+        ids.put(v, vertices.size());
+        vertices.add(v);
+        return vertices.size() - 1;
+    }
+
+    @Override
+    public int size() {
+        return vertices.size();
+    }
+
+    @Override
+    public int indexOf(final Vertex v) {
+        final Integer id = ids.get(v);
+        return id == null ? -1 : id;
+    }
+
+    @Override
+    public Vertex vertexAt(final int id) {
+        return vertices.get(id);
+    }
+}
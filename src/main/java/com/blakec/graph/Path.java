@@ -2,7 +2,10 @@ package com.blakec.graph;
 
 import com.google.common.collect.Lists;
 
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Created by blakec on 6/2/15.
@@ -11,18 +14,97 @@ import java.util.List;
  *
  */
 public class Path {
-    final List<Vertex> path = Lists.newArrayList();
+    final List<Vertex> path;
     final double weight;
+    /**
+     * Ids of the vertices of a packed path, null if the path is a list of vertices.
+     */
+    final int[] ids;
+    final VertexIndex index;
 
     public Path(final List<Vertex> path, final double weight) {
+        this.path = Lists.newArrayList(path);
         this.weight = weight;
-        this.path.addAll(path);
+        this.ids = null;
+        this.index = null;
     }
 
+    /**
+     * Creates a path packed as the ids of its vertices, 4 bytes a vertex instead of a vertex object each.  The
+     * vertices are only created when {@link #getPath()} is read.
+     *
+     * @param index  mapping of the ids to vertices.
+     * @param ids    ids of the vertices of the path in order.  Copied.
+     * @param length number of ids to use.
+     * @param weight weight of the path.
+     */
+    public Path(final VertexIndex index, final int[] ids, final int length, final double weight) {
+        this.ids = Arrays.copyOf(ids, length);
+        this.index = index;
+        this.weight = weight;
+        this.path = new PackedVertexList(index, this.ids);
+    }
+
+    /**
+     * @return vertices of the path.  For a packed path this is a read only view that creates each vertex as it is
+     * read.
+     */
     public List<Vertex> getPath() {
         return path;
     }
 
+    /**
+     * @return number of vertices in the path.
+     */
+    public int size() {
+        return path.size();
+    }
+
+    /**
+     * @return whether the path is stored as vertex ids.
+     */
+    public boolean isPacked() {
+        return ids != null;
+    }
+
+    /**
+     * @return mapping of the ids of a packed path to vertices, null if the path isn't packed.
+     */
+    public VertexIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @param i position in a packed path.
+     * @return id of the vertex at that position.
+     */
+    public int getId(final int i) {
+        return ids[i];
+    }
+
+    /**
+     * Read only list of the vertices with the given ids.
+     */
+    static class PackedVertexList extends AbstractList<Vertex> implements RandomAccess {
+        final VertexIndex index;
+        final int[] ids;
+
+        PackedVertexList(final VertexIndex index, final int[] ids) {
+            this.index = index;
+            this.ids = ids;
+        }
+
+        @Override
+        public Vertex get(final int i) {
+            return index.vertexAt(ids[i]);
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+
     public double getWeight() {
         return weight;
     }
@@ -0,0 +1,100 @@
+package com.blakec.graph;
+
+import java.util.Arrays;
+
+/**
+ * Scratch space for shortest path searches over a {@link CompactGraph}.
+ * <p/>
+ * A context can be reused for any number of searches over graphs with up to the number of vertices it was created
+ * for, so repeated queries don't allocate per vertex arrays.  Each search bumps a generation counter instead of
+ * clearing the arrays; a vertex's entries only count if its stamp matches the current generation.
+ * <p/>
+ * A context is not thread safe.  Give each thread its own.
+ */
+public class SearchContext {
+    final double[] distances;
+    final int[] predecessors;
+    final FibonacciHeap.Entry<Integer>[] entryPointers;
+    /**
+     * Generation in which each vertex was last reached.
+     */
+    final int[] stamps;
+    int generation = 0;
+    BucketQueue bucketQueue;
+    /**
+     * Heuristic estimate of each vertex reached by an A* search, allocated by the first one.
+     */
+    double[] estimates;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SearchContext(final int numVertices) {
+        distances = new double[numVertices];
+        predecessors = new int[numVertices];
+        entryPointers = new FibonacciHeap.Entry[numVertices];
+        stamps = new int[numVertices];
+    }
+
+    /**
+     * @return number of vertices this context can search over.
+     */
+    public int getCapacity() {
+        return stamps.length;
+    }
+
+    /**
+     * Forgets everything from the previous search.
+     */
+    void reset() {
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    boolean isReached(final int v) {
+        return stamps[v] == generation;
+    }
+
+    /**
+     * @return distance of v found in this search, infinity if it hasn't been reached.
+     */
+    double getDistance(final int v) {
+        return stamps[v] == generation ? distances[v] : Graph.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Records a better path to v.
+     */
+    void setDistance(final int v, final double distance, final int predecessor) {
+        if (stamps[v] != generation) {
+            stamps[v] = generation;
+            entryPointers[v] = null;
+        }
+        distances[v] = distance;
+        predecessors[v] = predecessor;
+    }
+
+    /**
+     * @return array for the heuristic estimate of each vertex.  Only the entries of vertices reached in the current
+     * search are meaningful.
+     */
+    double[] getEstimates() {
+        if (estimates == null) {
+            estimates = new double[stamps.length];
+        }
+        return estimates;
+    }
+
+    /**
+     * @return empty bucket queue that accepts key increases up to maxKeyIncrease.
+     */
+    BucketQueue getBucketQueue(final int maxKeyIncrease) {
+        if (bucketQueue == null || bucketQueue.buckets.length != maxKeyIncrease + 1) {
+            bucketQueue = new BucketQueue(maxKeyIncrease);
+        } else {
+            bucketQueue.clear();
+        }
+        return bucketQueue;
+    }
+}
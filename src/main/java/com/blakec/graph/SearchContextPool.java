@@ -0,0 +1,64 @@
+package com.blakec.graph;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounded pool of {@link SearchContext}s for searches over graphs of up to a fixed number of vertices.
+ * <p/>
+ * A search takes a context for as long as it runs and gives it back afterwards.  At most maxIdle contexts are kept
+ * between searches, so the memory held by the pool doesn't grow with the number of threads that have ever searched.
+ * When more searches run at once than there are idle contexts, new ones are created and the extras are dropped when
+ * given back.
+ * <p/>
+ * Safe to share between threads.
+ */
+public class SearchContextPool {
+    final int numVertices;
+    final int maxIdle;
+    /**
+     * Contexts given back and not yet taken again, most recently used last.
+     */
+    final ArrayDeque<SearchContext> idle = new ArrayDeque<SearchContext>();
+
+    /**
+     * @param numVertices number of vertices every context of the pool can search over.
+     * @param maxIdle     most contexts to keep between searches.
+     */
+    public SearchContextPool(final int numVertices, final int maxIdle) {
+        this.numVertices = numVertices;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * @return context for the caller's use alone until it is given back with {@link #release(SearchContext)}.
+     */
+    public SearchContext acquire() {
+        synchronized (idle) {
+            final SearchContext context = idle.pollLast();
+            if (context != null) {
+                return context;
+            }
+        }
+        return new SearchContext(numVertices);
+    }
+
+    /**
+     * Gives back a context taken with {@link #acquire()}.  It must not be used afterwards.
+     */
+    public void release(final SearchContext context) {
+        synchronized (idle) {
+            if (idle.size() < maxIdle) {
+                idle.addLast(context);
+            }
+        }
+    }
+
+    /**
+     * @return number of contexts held between searches.
+     */
+    public int getNumIdle() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+}
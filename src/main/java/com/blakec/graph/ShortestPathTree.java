@@ -0,0 +1,71 @@
+package com.blakec.graph;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Shortest paths from a single source to every vertex of a graph.
+ * <p/>
+ * Stores the distance and the predecessor of each vertex in arrays indexed by vertex id.  The shortest path to any
+ * vertex is read back by following predecessors, in time proportional to the length of the path.
+ */
+public class ShortestPathTree {
+    final CompactGraph graph;
+    final int source;
+    /**
+     * Distance from the source of each vertex, {@link Graph#POSITIVE_INFINITY} if the vertex can't be reached.
+     */
+    final double[] distances;
+    /**
+     * Vertex before each reached vertex on its shortest path.  Meaningless for vertices that can't be reached.
+     */
+    final int[] predecessors;
+
+    ShortestPathTree(final CompactGraph graph, final int source, final double[] distances, final int[] predecessors) {
+        this.graph = graph;
+        this.source = source;
+        this.distances = distances;
+        this.predecessors = predecessors;
+    }
+
+    public Vertex getSource() {
+        return graph.index.vertexAt(source);
+    }
+
+    /**
+     * @param v vertex.
+     * @return distance from the source to the vertex, {@link Graph#POSITIVE_INFINITY} if it can't be reached.
+     */
+    public double getDistance(final Vertex v) {
+        final int id = graph.index.indexOf(v);
+        return id < 0 ? Graph.POSITIVE_INFINITY : distances[id];
+    }
+
+    /**
+     * @see #getDistance(Vertex)
+     */
+    public double getDistance(final int id) {
+        return distances[id];
+    }
+
+    public boolean isReachable(final Vertex v) {
+        return getDistance(v) != Graph.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param target vertex.
+     * @return shortest path from the source to the target.  Empty with infinite weight if it can't be reached.
+     */
+    public Path getPath(final Vertex target) {
+        return getPath(graph.index.indexOf(target));
+    }
+
+    /**
+     * @see #getPath(Vertex)
+     */
+    public Path getPath(final int target) {
+        if (target < 0 || distances[target] == Graph.POSITIVE_INFINITY) {
+            return new Path(Lists.<Vertex>newArrayList(), Graph.POSITIVE_INFINITY);
+        }
+        return graph.toPath(CompactGraph.tracePath(predecessors, source, target), distances[target]);
+    }
+}
@@ -0,0 +1,27 @@
+package com.blakec.graph;
+
+/**
+ * Mapping between the vertices of a graph and dense int ids in the range [0, size).
+ * <p/>
+ * Used by {@link CompactGraph} so that its adjacency can be stored in primitive arrays
+ * while callers still talk in terms of vertices.
+ */
+public interface VertexIndex {
+
+    /**
+     * @return number of ids in this index.
+     */
+    int size();
+
+    /**
+     * @param v vertex.
+     * @return id of the vertex, or -1 if the vertex is not part of this index.
+     */
+    int indexOf(Vertex v);
+
+    /**
+     * @param id vertex id.
+     * @return vertex with the given id.
+     */
+    Vertex vertexAt(int id);
+}
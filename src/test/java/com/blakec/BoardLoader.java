@@ -1,7 +1,6 @@
 package com.blakec;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 
 /**
@@ -18,7 +17,6 @@ public class BoardLoader {
     final static String SPECIAL_BOARD_32x32 = "/special_board_32x32.txt";
 
     protected Board loadBoardFromFile(final String resource) throws IOException {
-        final String board = new String(Files.readAllBytes(Paths.get(this.getClass().getResource(resource).getPath())));
-        return new Board(board);
+        return Board.load(Paths.get(this.getClass().getResource(resource).getPath()));
     }
 }
@@ -1,11 +1,34 @@
 package com.blakec;
 
+import com.blakec.graph.CompactGraph;
+import com.blakec.graph.Deadline;
+import com.blakec.graph.Graph;
+import com.blakec.graph.Heuristic;
+import com.blakec.graph.LongestPathResult;
 import com.blakec.graph.Path;
+import com.blakec.graph.SearchContext;
+import com.blakec.graph.SearchContextPool;
+import com.blakec.graph.ShortestPathTree;
+import com.blakec.graph.Vertex;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -35,6 +58,18 @@ public class BoardTest {
         assertFalse(knightBoard.isValidPosition(p));
     }
 
+    @Test
+    public void testGetPositionType() throws IOException {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        assertEquals(Board.BARRIER_CHAR, knightBoard.getPositionType(new Position(0, 8)));
+        assertEquals(Board.LAVA_CHAR, knightBoard.getPositionType(new Position(0, 12)));
+        assertEquals(Board.ROCK_CHAR, knightBoard.getPositionType(3, 23));
+        assertEquals(Board.WATER_CHAR, knightBoard.getPositionType(8, 8));
+        assertEquals(Board.TELEPORTER_CHAR, knightBoard.getPositionType(11, 26));
+        assertEquals(Board.DEFAULT_CHAR, knightBoard.getPositionType(0, 0));
+        assertEquals(Board.DEFAULT_CHAR, knightBoard.getPositionType(40, 0));
+    }
+
     @Test
     public void testIsValidMove_valid() throws IOException {
         Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
@@ -59,6 +94,21 @@ public class BoardTest {
         assertFalse(knightBoard.isValidMove(start, end));
     }
 
+    @Test
+    public void testIsValidMove_invalid_notKnightMove() throws IOException {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SIMPLE_BOARD_8x8);
+        assertFalse(knightBoard.isValidMove(new Position(3, 3), new Position(4, 4)));
+        assertFalse(knightBoard.isValidMove(new Position(3, 3), new Position(3, 7)));
+        assertFalse(knightBoard.isValidMove(new Position(0, 0), new Position(-2, -1)));
+    }
+
+    @Test
+    public void testGeneratePossibleKnightMoves_corner() throws IOException {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SIMPLE_BOARD_8x8);
+        assertEquals(Sets.newHashSet(new Position(1, 2), new Position(2, 1)),
+                knightBoard.generatePossibleKnightMoves(new Position(0, 0)));
+    }
+
     @Test
     public void testComputeCostOfMove_toWater() throws IOException {
         Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
@@ -133,6 +183,186 @@ public class BoardTest {
         assertEquals(27.0, p.getWeight(), 0.0001);
     }
 
+    @Test
+    public void testShortestPath_reusesPositionGraph() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        Path first = knightBoard.computeShortestPath(new Position(0, 0), new Position(0, 31));
+        Path second = knightBoard.computeShortestPath(new Position(0, 0), new Position(0, 31));
+        assertEquals(first, second);
+        assertSame(knightBoard.getPositionGraph(), knightBoard.getPositionGraph());
+    }
+
+    @Test
+    public void testKnightDistance_matchesShortestPathOnOpenBoard() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SIMPLE_BOARD_32x32);
+        Position center = new Position(16, 16);
+        for (int r = 10; r <= 22; r++) {
+            for (int c = 10; c <= 22; c++) {
+                Position p = new Position(r, c);
+                Path path = knightBoard.computeShortestPath(center, p);
+                assertEquals(path.getWeight(), center.knightDistanceTo(p), 0.0001);
+            }
+        }
+    }
+
+    @Test
+    public void testShortestPath_searchModesMatchDijkstra() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        Position[] positions = {new Position(0, 0), new Position(0, 31), new Position(31, 31), new Position(31, 0),
+                new Position(11, 26), new Position(15, 16), new Position(20, 2), new Position(5, 13)};
+        for (Position start : positions) {
+            for (Position end : positions) {
+                Path dijkstra = knightBoard.computeShortestPath(start, end, Board.SearchMode.DIJKSTRA);
+                Path aStar = knightBoard.computeShortestPath(start, end, Board.SearchMode.A_STAR);
+                assertEquals(dijkstra.getWeight(), aStar.getWeight(), 0.0001);
+                assertTrue(knightBoard.isValidSetOfMoves(aStar));
+                Path bidirectional = knightBoard.computeShortestPath(start, end, Board.SearchMode.BIDIRECTIONAL);
+                assertEquals(dijkstra.getWeight(), bidirectional.getWeight(), 0.0001);
+                assertEquals(start, bidirectional.getPath().get(0));
+                assertEquals(end, bidirectional.getPath().get(bidirectional.getPath().size() - 1));
+                assertTrue(knightBoard.isValidSetOfMoves(bidirectional));
+            }
+        }
+    }
+
+    @Test
+    public void testShortestPath_aStar_teleportBoard() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.TELEPORTER_LAVA_BOARD_8x8);
+        Path p = knightBoard.computeShortestPath(new Position(0, 0), new Position(7, 7), Board.SearchMode.A_STAR);
+        assertEquals(4, p.getPath().size());
+        assertEquals(6.0, p.getWeight(), 0.0001);
+        assertTrue(knightBoard.isValidSetOfMoves(p));
+
+        // the heuristic is built once and never overestimates, even with free jumps between teleporters.
+        Heuristic heuristic = knightBoard.getKnightDistanceHeuristic();
+        assertTrue(heuristic == knightBoard.getKnightDistanceHeuristic());
+        Position start = new Position(0, 0);
+        ShortestPathTree tree = knightBoard.computeDistanceField(start);
+        PositionIndex index = knightBoard.getPositionIndex();
+        boolean isPositive = false;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                Position end = new Position(r, c);
+                if (knightBoard.isValidPosition(end) && tree.getDistance(end) < Graph.POSITIVE_INFINITY) {
+                    double estimate = heuristic.estimate(start, end);
+                    assertEquals(estimate, heuristic.estimate(index.indexOf(start), index.indexOf(end)), 0.0);
+                    assertTrue("Estimate to " + end, estimate <= tree.getDistance(end) + 0.0001);
+                    isPositive |= estimate > 0;
+                }
+            }
+        }
+        assertTrue(isPositive);
+    }
+
+    @Test
+    public void testDistanceField_matchesShortestPath() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        Position source = new Position(0, 0);
+        ShortestPathTree field = knightBoard.computeDistanceField(source);
+        assertEquals(source, field.getSource());
+        for (int r = 0; r < 32; r += 3) {
+            for (int c = 0; c < 32; c += 3) {
+                Position end = new Position(r, c);
+                if (!knightBoard.isValidPosition(end)) {
+                    assertFalse(field.isReachable(end));
+                    continue;
+                }
+                Path expected = knightBoard.computeShortestPath(source, end);
+                Path p = field.getPath(end);
+                assertEquals(expected.getWeight(), field.getDistance(end), 0.0001);
+                assertEquals(expected.getWeight(), p.getWeight(), 0.0001);
+                assertTrue(knightBoard.isValidSetOfMoves(p));
+            }
+        }
+    }
+
+    @Test
+    public void testDistanceField_split_board_8x8_no_path() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SPLIT_BOARD_8x8);
+        ShortestPathTree field = knightBoard.computeDistanceField(new Position(0, 0));
+        assertFalse(field.isReachable(new Position(7, 7)));
+        assertTrue(field.getPath(new Position(7, 7)).getPath().isEmpty());
+    }
+
+    @Test
+    public void testShortestPaths_batchMatchesSingleQueries() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        List<ShortestPathQuery> queries = Lists.newArrayList();
+        for (int r = 0; r < 32; r += 4) {
+            for (int c = 0; c < 32; c += 4) {
+                Position end = new Position(r, c);
+                if (knightBoard.isValidPosition(end)) {
+                    queries.add(new ShortestPathQuery(new Position(0, 0), end));
+                    queries.add(new ShortestPathQuery(end, new Position(31, 31)));
+                }
+            }
+        }
+        List<ShortestPathResult> results = knightBoard.computeShortestPaths(queries);
+        assertEquals(queries.size(), results.size());
+        for (int i = 0; i < queries.size(); i++) {
+            ShortestPathQuery query = queries.get(i);
+            ShortestPathResult result = results.get(i);
+            assertEquals(query, result.getQuery());
+            assertTrue(result.isSuccess());
+            Path expected = knightBoard.computeShortestPath(query.getStart(), query.getEnd());
+            assertEquals(expected.getWeight(), result.getPath().getWeight(), 0.0001);
+        }
+    }
+
+    @Test
+    public void testShortestPaths_invalidQueryDoesNotFailBatch() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        List<ShortestPathQuery> queries = Lists.newArrayList(
+                new ShortestPathQuery(new Position(0, 0), new Position(24, 18)),
+                new ShortestPathQuery(new Position(0, 0), new Position(31, 31)));
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            List<ShortestPathResult> results = knightBoard.computeShortestPaths(queries, pool);
+            assertFalse(results.get(0).isSuccess());
+            assertNotNull(results.get(0).getError());
+            assertTrue(results.get(1).isSuccess());
+            assertTrue(knightBoard.isValidSetOfMoves(results.get(1).getPath()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSearchContextPool_notKeptOnLargeBoards() throws Exception {
+        SearchContextPool small = Board.createSearchContextPool(32 * 32);
+        small.release(small.acquire());
+        assertEquals(1, small.getNumIdle());
+        SearchContextPool large = Board.createSearchContextPool(Board.MAX_POOLED_SEARCH_CELLS + 1);
+        large.release(new SearchContext(1));
+        assertEquals(0, large.getNumIdle());
+    }
+
+    @Test
+    public void testShortestPath_sharedBoardAcrossThreads() throws Exception {
+        final Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        final Position start = new Position(0, 0);
+        final Position end = new Position(31, 31);
+        final double expected = knightBoard.computeShortestPath(start, end).getWeight();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Double>> weights = Lists.newArrayList();
+            for (int i = 0; i < 12; i++) {
+                final Board.SearchMode mode = Board.SearchMode.values()[i % Board.SearchMode.values().length];
+                weights.add(executor.submit(new Callable<Double>() {
+                    @Override
+                    public Double call() throws Exception {
+                        return knightBoard.computeShortestPath(start, end, mode).getWeight();
+                    }
+                }));
+            }
+            for (Future<Double> weight : weights) {
+                assertEquals(expected, weight.get(), 0.0001);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testLongestPath_simple8x8() throws Exception {
         Board knightBoard = loadBoardFromFile(BoardLoader.SIMPLE_BOARD_8x8);
@@ -142,6 +372,16 @@ public class BoardTest {
         assertTrue(knightBoard.isValidSetOfMoves(p));
     }
 
+    @Test
+    public void testWarnsdorffPath_simple8x8() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SIMPLE_BOARD_8x8);
+        CompactGraph graph = knightBoard.getPositionGraph();
+        Path p = graph.computeWarnsdorffPath(0, 1, 64);
+        assertEquals(64, p.getPath().size());
+        assertEquals(new Position(0, 1), p.getPath().get(63));
+        assertTrue(knightBoard.isValidSetOfMoves(p));
+    }
+
     @Test
     public void testLongestPath_simple16x8() throws Exception {
         final Board knightBoard = loadBoardFromFile(BoardLoader.SIMPLE_BOARD_16x8);
@@ -166,8 +406,309 @@ public class BoardTest {
         assertTrue(knightBoard.isValidSetOfMoves(p));
     }
 
+    @Test
+    public void testLongestPath_parallelMatchesSingleThread() throws Exception {
+        final Board knightBoard = loadBoardFromFile(BoardLoader.SIMPLE_BOARD_32x32);
+        final ForkJoinPool parallelPool = new ForkJoinPool(4);
+        final ForkJoinPool sequentialPool = new ForkJoinPool(1);
+        try {
+            Path parallel = knightBoard.computeLongestPath(new Position(3, 2), new Position(20, 10), parallelPool);
+            Path sequential = knightBoard.computeLongestPath(new Position(3, 2), new Position(20, 10), sequentialPool);
+            assertEquals(1024, parallel.getPath().size());
+            assertEquals(sequential, parallel);
+            assertTrue(knightBoard.isValidSetOfMoves(parallel));
+        } finally {
+            parallelPool.shutdown();
+            sequentialPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testLongestPath_deadlineReturnsBestSoFar() throws Exception {
+        Board knightBoard = new Board(0, 0, 14, 14);
+        // the greedy walks fail on this pair and the search takes around a hundred milliseconds.
+        final long start = System.currentTimeMillis();
+        LongestPathResult result = knightBoard.computeLongestPathBruteForce(new Position(8, 4), new Position(11, 12),
+                Deadline.after(10, TimeUnit.MILLISECONDS));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertFalse(result.isComplete());
+        assertFalse(result.hasMaxPathSize());
+        Path p = result.getPath();
+        assertFalse(p.getPath().isEmpty());
+        assertEquals(new Position(11, 12), p.getPath().get(p.getPath().size() - 1));
+        assertTrue(knightBoard.isValidSetOfMoves(p));
+    }
+
+    @Test
+    public void testLongestPathBruteForce_parallelOnIrregularBoard() throws Exception {
+        Board knightBoard = new Board(". . . . . . .\n" +
+                ". . R . . . .\n" +
+                ". . . . . B .\n" +
+                ". . . . . . .\n" +
+                ". R . . . . .\n" +
+                ". . . . W . .\n");
+        Position start = new Position(0, 0);
+        Position end = new Position(5, 6);
+        LongestPathResult sequential = knightBoard.computeLongestPathBruteForce(start, end, Deadline.none());
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            LongestPathResult parallel = knightBoard.computeLongestPathBruteForce(start, end, pool, Deadline.none());
+            assertTrue(parallel.isComplete());
+            assertEquals(sequential.getPath().getPath().size(), parallel.getPath().getPath().size());
+            assertTrue(knightBoard.isValidSetOfMoves(parallel.getPath()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testLongestPath_cancelledDeadline() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SIMPLE_BOARD_32x32);
+        Deadline deadline = Deadline.none();
+        assertFalse(deadline.hasExpired());
+        deadline.cancel();
+        assertTrue(deadline.hasExpired());
+        // sub boards found by the library or a greedy walk are complete without searching.
+        LongestPathResult result = knightBoard.computeLongestPath(new Position(0, 0), new Position(31, 30), deadline);
+        assertTrue(result.isComplete());
+        assertEquals(1024, result.getPath().getPath().size());
+    }
+
+    @Test
+    public void testTourLibrary_toursAreValid() throws Exception {
+        TourLibrary library = TourLibrary.getDefault();
+        assertTrue(library.size() > 0);
+        Board subBoard = new Board(8, 16, 8, 8);
+        for (byte[] tour : library.tours) {
+            if (tour == null) {
+                continue;
+            }
+            Path p = subBoard.computeSubBoardPath(subBoard, subBoard.getPosition(tour[0]), subBoard.getPosition(tour[63]), Deadline.none()).getPath();
+            assertEquals(64, Sets.newHashSet(p.getPath()).size());
+            assertTrue(subBoard.isValidSetOfMoves(p));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        library.write(out);
+        TourLibrary copy = TourLibrary.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(library.size(), copy.size());
+        for (int i = 0; i < library.tours.length; i++) {
+            assertArrayEquals(library.tours[i], copy.tours[i]);
+        }
+    }
+
+    @Test
+    public void testSerpentineOrdering_visitsEveryCell() throws Exception {
+        final int rows = 5;
+        final int cols = 6;
+        int numOrdered = 0;
+        for (int start = 0; start < rows * cols; start++) {
+            for (int end = 0; end < rows * cols; end++) {
+                if (start == end) {
+                    continue;
+                }
+                final int[] order = SerpentineOrdering.compute(rows, cols, start, end);
+                if (order == null) {
+                    continue;
+                }
+                numOrdered++;
+                assertEquals(start, order[0]);
+                assertEquals(end, order[order.length - 1]);
+                assertEquals(rows * cols, Sets.newHashSet(Ints.asList(order)).size());
+                for (int i = 1; i < order.length; i++) {
+                    assertTrue(Math.abs(order[i] / cols - order[i - 1] / cols) <= 1);
+                    assertTrue(Math.abs(order[i] % cols - order[i - 1] % cols) <= 1);
+                }
+            }
+        }
+        assertEquals(rows * cols * (rows * cols - 1), numOrdered);
+    }
+
+    @Test
+    public void testSerpentineOrdering_besideCorner() throws Exception {
+        // (0, 1) to (1, 0) of a 9x9 grid, which the bands and rotations can't order.
+        final int[] order = SerpentineOrdering.compute(9, 9, 1, 9);
+        assertTrue(SerpentineOrdering.isValid(9, 9, 1, 9, order));
+        // (0, 1) to (2, 1) of a 3x5 grid splits it in two.
+        assertTrue(SerpentineOrdering.isValid(3, 5, 1, 11, SerpentineOrdering.compute(3, 5, 1, 11)));
+
+        Board knightBoard = new Board(0, 0, 72, 72);
+        LongestPathResult result = knightBoard.computeLongestPath(new Position(0, 8), new Position(8, 1), Deadline.none());
+        assertTrue(result.hasMaxPathSize());
+        assertEquals(72 * 72, result.getPath().size());
+        assertTrue(knightBoard.isValidSetOfMoves(result.getPath()));
+    }
+
+    @Test
+    public void testLongestPath_serpentineSubBoards() throws Exception {
+        Board knightBoard = new Board(0, 0, 48, 40);
+        LongestPathResult result = knightBoard.computeLongestPath(new Position(17, 3), new Position(20, 45), Deadline.none());
+        assertTrue(result.hasMaxPathSize());
+        assertEquals(40 * 48, Sets.newHashSet(result.getPath().getPath()).size());
+        assertTrue(knightBoard.isValidSetOfMoves(result.getPath()));
+    }
+
+    @Test
+    public void testRead_matchesString() throws Exception {
+        final byte[] text = Files.readAllBytes(Paths.get(this.getClass().getResource(BoardLoader.SPECIAL_BOARD_32x32).getPath()));
+        Board fromString = new Board(new String(text));
+        Board fromStream = Board.read(new ByteArrayInputStream(text));
+        Board fromFile = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        for (int r = 0; r < 32; r++) {
+            for (int c = 0; c < 32; c++) {
+                assertEquals(fromString.getPositionType(r, c), fromStream.getPositionType(r, c));
+                assertEquals(fromString.getPositionType(r, c), fromFile.getPositionType(r, c));
+            }
+        }
+        assertFalse(fromStream.isValidPosition(new Position(32, 0)));
+        assertFalse(fromStream.isValidPosition(new Position(0, 32)));
+        assertEquals(fromString.computeShortestPath(new Position(0, 0), new Position(31, 31)).getWeight(),
+                fromStream.computeShortestPath(new Position(0, 0), new Position(31, 31)).getWeight(), 0.0001);
+    }
+
+    @Test
+    public void testRead_lineEndings() throws IOException {
+        Board board = Board.read(new ByteArrayInputStream(". W .\r\nT . L\r\n\r\n".getBytes("US-ASCII")));
+        assertEquals(Board.WATER_CHAR, board.getPositionType(0, 1));
+        assertEquals(Board.LAVA_CHAR, board.getPositionType(1, 2));
+        assertFalse(board.isValidPosition(new Position(2, 0)));
+    }
+
+    @Test
+    public void testRead_unequalRows() throws IOException {
+        for (String text : new String[]{". . .\n. .\n", ". .\n. . .\n", ". .\n\n. .\n", "\n\n"}) {
+            try {
+                Board.read(new ByteArrayInputStream(text.getBytes("US-ASCII")));
+                fail("Read board " + text);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testMoveMasks_matchMoveRules() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        byte[] masks = knightBoard.getMoveMasks();
+        for (int r = 0; r < 32; r++) {
+            for (int c = 0; c < 32; c++) {
+                int expected = 0;
+                if (knightBoard.isValidPosition(r, c)) {
+                    for (Board.Movement d : Board.MOVEMENTS) {
+                        if (knightBoard.isValidPosition(r + d.dRows, c + d.dColumns) && !knightBoard.doesMoveHitBarrier(r, c, d)) {
+                            expected |= 1 << d.ordinal();
+                        }
+                    }
+                }
+                assertEquals("Moves from " + r + "," + c, expected, masks[r * 32 + c] & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void testBinary_roundTrip() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        knightBoard.writeBinary(out);
+        Board copy = Board.readBinary(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(knightBoard, copy);
+        assertArrayEquals(knightBoard.getMoveMasks(), copy.getMoveMasks());
+        assertEquals(knightBoard.computeShortestPath(new Position(0, 0), new Position(31, 31)).getWeight(),
+                copy.computeShortestPath(new Position(0, 0), new Position(31, 31)).getWeight(), 0.0001);
+
+        byte[] flagged = out.toByteArray();
+        // the flags byte follows the magic and version.
+        flagged[6] = 1;
+        try {
+            Board.readBinary(new ByteArrayInputStream(flagged));
+            fail("Read a board file with unknown flags.");
+        } catch (IOException e) {
+            // expected
+        }
+
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 1);
+        try {
+            Board.readBinary(new ByteArrayInputStream(truncated));
+            fail("Read a truncated board file.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPositionGraph_snapshot() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        java.nio.file.Path file = Files.createTempFile("graph", ".bin");
+        try {
+            OutputStream out = Files.newOutputStream(file);
+            try {
+                knightBoard.writePositionGraph(out);
+            } finally {
+                out.close();
+            }
+            Board loaded = Board.load(resourcePath(BoardLoader.SPECIAL_BOARD_32x32), file);
+            assertEquals(knightBoard.getPositionGraph().getNumEdges(), loaded.getPositionGraph().getNumEdges());
+            assertEquals(knightBoard.computeShortestPath(new Position(0, 0), new Position(31, 31)).getWeight(),
+                    loaded.computeShortestPath(new Position(0, 0), new Position(31, 31)).getWeight(), 0.0001);
+            try {
+                Board.load(resourcePath(BoardLoader.SIMPLE_BOARD_32x32), file);
+                fail("Loaded the graph of a different board.");
+            } catch (IOException e) {
+                // expected
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testIsValidSetOfMoves_singlePosition() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SPECIAL_BOARD_32x32);
+        // a single position has no moves, so it is valid even off the board or on a rock.
+        for (Position p : new Position[]{new Position(0, 0), new Position(-1, 40), new Position(24, 18)}) {
+            assertTrue(knightBoard.isValidSetOfMoves(Lists.newArrayList(p)));
+            assertTrue(knightBoard.isValidSetOfMoves(new Path(Lists.<Vertex>newArrayList(p), 0)));
+        }
+        assertTrue(knightBoard.isValidSetOfMoves(Lists.<Position>newArrayList()));
+        // findInvalidPosition checks the positions themselves.
+        assertEquals(0, knightBoard.findInvalidPosition(Lists.newArrayList(new Position(24, 18)).iterator(), false));
+        assertEquals(0, knightBoard.findInvalidPosition(Lists.newArrayList(new Position(-1, 40)).iterator(), false));
+        assertFalse(knightBoard.isValidSetOfMoves(Lists.newArrayList(new Position(24, 18), new Position(26, 19))));
+    }
+
+    @Test
+    public void testFindInvalidPosition() throws Exception {
+        Board knightBoard = loadBoardFromFile(BoardLoader.SIMPLE_BOARD_8x8);
+        List<Position> tour = Lists.newArrayList();
+        for (Vertex v : knightBoard.computeLongestPathBruteForce(new Position(0, 0), new Position(7, 6)).getPath()) {
+            tour.add((Position) v);
+        }
+        assertEquals(-1, knightBoard.findInvalidPosition(tour.iterator(), true));
+
+        StringBuilder text = new StringBuilder();
+        for (Position p : tour) {
+            text.append('(').append(p.getR()).append(", ").append(p.getC()).append(")\n");
+        }
+        assertEquals(-1, knightBoard.findInvalidPosition(new ByteArrayInputStream(text.toString().getBytes("US-ASCII")), true));
+
+        List<Position> revisit = Lists.newArrayList(tour.subList(0, 10));
+        revisit.add(tour.get(8));
+        assertEquals(-1, knightBoard.findInvalidPosition(revisit.iterator(), false));
+        assertEquals(10, knightBoard.findInvalidPosition(revisit.iterator(), true));
+
+        List<Position> broken = Lists.newArrayList(tour);
+        broken.set(20, tour.get(22));
+        assertEquals(20, knightBoard.findInvalidPosition(broken.iterator(), false));
+        assertFalse(knightBoard.isValidSetOfMoves(broken));
+        assertEquals(0, knightBoard.findInvalidPosition(new ByteArrayInputStream("8 0\n".getBytes("US-ASCII")), false));
+        assertEquals(1, knightBoard.findInvalidPosition(new ByteArrayInputStream("0,0 -2,1".getBytes("US-ASCII")), false));
+    }
+
     protected Board loadBoardFromFile(final String resource) throws IOException {
-        final String board = new String(Files.readAllBytes(Paths.get(this.getClass().getResource(resource).getPath())));
-        return new Board(board);
+        return Board.load(resourcePath(resource));
+    }
+
+    protected java.nio.file.Path resourcePath(final String resource) {
+        return Paths.get(this.getClass().getResource(resource).getPath());
     }
 }
@@ -0,0 +1,354 @@
+package com.blakec.graph;
+
+import com.blakec.Position;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the compressed sparse row graph.
+ */
+public class CompactGraphTest {
+
+    /**
+     * Same graph as GraphTest's simple shortest path, packed into a compact graph.
+     */
+    protected Graph simpleGraph() {
+        Vertex v0 = new Position(0, 0);
+        Vertex v1 = new Position(1, 1);
+        Vertex v2 = new Position(2, 2);
+        Vertex v3 = new Position(3, 3);
+        Vertex v4 = new Position(4, 4);
+        Vertex v5 = new Position(5, 5);
+        Vertex v6 = new Position(6, 6);
+        final Graph graph = new Graph();
+        graph.addEdge(v0, v1, 80);
+        graph.addEdge(v1, v0, 80);
+        graph.addEdge(v0, v5, 82);
+        graph.addEdge(v5, v0, 82);
+        graph.addEdge(v1, v2, 40);
+        graph.addEdge(v2, v1, 40);
+        graph.addEdge(v1, v3, 103);
+        graph.addEdge(v3, v1, 103);
+        graph.addEdge(v3, v5, 62);
+        graph.addEdge(v5, v3, 62);
+        graph.addEdge(v3, v6, 97);
+        graph.addEdge(v6, v3, 97);
+        graph.addEdge(v4, v5, 133);
+        graph.addEdge(v5, v4, 133);
+        graph.addEdge(v5, v6, 192);
+        graph.addEdge(v6, v5, 192);
+        return graph;
+    }
+
+    @Test
+    public void testShortestPath_simple() throws Exception {
+        final CompactGraph graph = simpleGraph().toCompactGraph();
+        assertEquals(7, graph.getNumVertices());
+        assertEquals(16, graph.getNumEdges());
+
+        Path p = graph.computeShortestPath(new Position(0, 0), new Position(6, 6));
+        Path correct = new Path(Lists.<Vertex>newArrayList(
+                new Position(0, 0), new Position(5, 5), new Position(3, 3), new Position(6, 6)), 241);
+        assertEquals(correct, p);
+    }
+
+    @Test
+    public void testShortestPath_simple_noSolution() throws Exception {
+        final Graph graph = simpleGraph();
+        graph.addEdge(new Position(7, 7), new Position(0, 0), 1);
+        Path p = graph.toCompactGraph().computeShortestPath(new Position(0, 0), new Position(7, 7));
+        assertTrue(p.getPath().isEmpty());
+        assertEquals(Graph.POSITIVE_INFINITY, p.getWeight(), 0.0001);
+    }
+
+    @Test
+    public void testShortestPath_bucketQueueMatchesHeap() throws Exception {
+        final CompactGraph graph = simpleGraph().toCompactGraph();
+        assertEquals(192, graph.maxIntegerWeight);
+        for (int source = 0; source < graph.getNumVertices(); source++) {
+            for (int target = 0; target < graph.getNumVertices(); target++) {
+                assertEquals(graph.computeShortestPathWithHeap(source, target).getWeight(),
+                        graph.computeShortestPathWithBuckets(source, target).getWeight(), 0.0001);
+            }
+        }
+    }
+
+    @Test
+    public void testShortestPath_bidirectional() throws Exception {
+        final Graph graph = simpleGraph();
+        // one way edge, only usable forward.
+        graph.addEdge(new Position(2, 2), new Position(6, 6), 100);
+        final CompactGraph compactGraph = graph.toCompactGraph();
+        // contexts reused by every search, which must not see each other's labels.
+        final SearchContext forward = new SearchContext(compactGraph.getNumVertices());
+        final SearchContext backward = new SearchContext(compactGraph.getNumVertices());
+        for (int source = 0; source < compactGraph.getNumVertices(); source++) {
+            for (int target = 0; target < compactGraph.getNumVertices(); target++) {
+                final Path expected = compactGraph.computeShortestPath(source, target);
+                assertEquals(expected.getWeight(), compactGraph.computeShortestPathBidirectional(source, target).getWeight(), 0.0001);
+                assertEquals(expected.getWeight(),
+                        compactGraph.computeShortestPathBidirectional(source, target, forward, backward).getWeight(), 0.0001);
+            }
+        }
+        Path p = compactGraph.computeShortestPathBidirectional(new Position(2, 2), new Position(6, 6));
+        assertEquals(new Path(Lists.<Vertex>newArrayList(new Position(2, 2), new Position(6, 6)), 100), p);
+    }
+
+    @Test
+    public void testShortestPath_fractionalWeightsUseHeap() throws Exception {
+        final Graph graph = new Graph();
+        graph.addEdge(new Position(0, 0), new Position(1, 1), 0.5);
+        graph.addEdge(new Position(1, 1), new Position(2, 2), 0.25);
+        graph.addEdge(new Position(0, 0), new Position(2, 2), 1);
+        final CompactGraph compactGraph = graph.toCompactGraph();
+        assertEquals(-1, compactGraph.maxIntegerWeight);
+        Path p = compactGraph.computeShortestPath(new Position(0, 0), new Position(2, 2));
+        assertEquals(3, p.getPath().size());
+        assertEquals(0.75, p.getWeight(), 0.0001);
+    }
+
+    @Test
+    public void testLongestPath_simple() throws Exception {
+        final CompactGraph graph = simpleGraph().toCompactGraph();
+        Path p = graph.computeLongestPath(new Position(2, 2), new Position(6, 6), 7);
+        // v4 is a dead end so the longest path visits every other vertex.
+        assertEquals(6, p.getPath().size());
+        assertEquals(new Position(2, 2), p.getPath().get(0));
+        assertEquals(new Position(6, 6), p.getPath().get(5));
+    }
+
+    @Test
+    public void testWarnsdorffPath_stuck() throws Exception {
+        final CompactGraph graph = simpleGraph().toCompactGraph();
+        final VertexIndex index = graph.getIndex();
+        // v4 is a dead end so no path visits all 7 vertices.
+        Path p = graph.computeWarnsdorffPath(index.indexOf(new Position(2, 2)), index.indexOf(new Position(6, 6)), 7);
+        assertTrue(p.getPath().isEmpty());
+        p = graph.computeWarnsdorffPath(index.indexOf(new Position(2, 2)), index.indexOf(new Position(6, 6)), 6);
+        assertEquals(6, p.getPath().size());
+        assertEquals(new Position(6, 6), p.getPath().get(5));
+    }
+
+    /**
+     * Knight moves on an open board of the given size.
+     */
+    protected CompactGraph knightGraph(final int rows, final int cols) {
+        final int[][] moves = {{-2, -1}, {-2, 1}, {-1, 2}, {1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}};
+        final Graph graph = new Graph();
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                for (int[] m : moves) {
+                    int nr = r + m[0];
+                    int nc = c + m[1];
+                    if (nr >= 0 && nr < rows && nc >= 0 && nc < cols) {
+                        graph.addEdge(new Position(r, c), new Position(nr, nc), 1);
+                    }
+                }
+            }
+        }
+        return graph.toCompactGraph();
+    }
+
+    @Test
+    public void testLongestPath_bitmaskSearchMatchesArraySearch() throws Exception {
+        final CompactGraph graph = knightGraph(5, 5);
+        final int source = graph.getIndex().indexOf(new Position(0, 0));
+        final int target = graph.getIndex().indexOf(new Position(4, 4));
+        final int[] hops = graph.computeHopsFrom(target);
+
+        CompactGraph.LongestPathState bitmask = new CompactGraph.LongestPathState(graph, target, hops, 1, 25, 25, Long.MAX_VALUE, Deadline.none());
+        assertTrue(bitmask.neighborMasks != null);
+        graph.search(source, bitmask);
+        CompactGraph.LongestPathState array = new CompactGraph.LongestPathState(graph, target, hops, 1, 25, 25, Long.MAX_VALUE, Deadline.none());
+        graph.computeLongestPathRecursive(source, 0, array);
+
+        assertEquals(25, bitmask.longestPathSize);
+        assertEquals(array.longestPathSize, bitmask.longestPathSize);
+        for (int i = 0; i < bitmask.longestPathSize; i++) {
+            assertEquals(array.longestPath[i], bitmask.longestPath[i]);
+        }
+    }
+
+    @Test
+    public void testTwoColoring_knightGraph() throws Exception {
+        final CompactGraph graph = knightGraph(5, 6);
+        assertTrue(graph.isSymmetric());
+        final boolean[] colors = graph.computeTwoColoring();
+        final boolean corner = colors[graph.getIndex().indexOf(new Position(0, 0))];
+        for (int r = 0; r < 5; r++) {
+            for (int c = 0; c < 6; c++) {
+                assertEquals((r + c) % 2 == 0, colors[graph.getIndex().indexOf(new Position(r, c))] == corner);
+            }
+        }
+
+        final Graph oneWay = new Graph();
+        oneWay.addEdge(new Position(0, 0), new Position(0, 1), 1);
+        oneWay.addEdge(new Position(0, 1), new Position(0, 2), 1);
+        oneWay.addEdge(new Position(0, 2), new Position(0, 1), 1);
+        assertFalse(oneWay.toCompactGraph().isSymmetric());
+    }
+
+    /**
+     * @return size of the longest path from v to target found by trying every path, without any pruning.
+     */
+    protected int longestPathSizeByBruteForce(final CompactGraph graph, final int v, final int target, final boolean[] visited) {
+        if (v == target) {
+            return 1;
+        }
+        visited[v] = true;
+        int longest = 0;
+        for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++) {
+            final int u = graph.targets[e];
+            if (!visited[u]) {
+                final int size = longestPathSizeByBruteForce(graph, u, target, visited);
+                if (size > 0) {
+                    longest = Math.max(longest, size + 1);
+                }
+            }
+        }
+        visited[v] = false;
+        return longest;
+    }
+
+    @Test
+    public void testLongestPath_pruningKeepsLongestPath() throws Exception {
+        // only a few targets can be reached through all 20 vertices, the other searches have to prove their longest.
+        final CompactGraph graph = knightGraph(4, 5);
+        final int source = graph.getIndex().indexOf(new Position(0, 0));
+        for (int target = 0; target < graph.getNumVertices(); target++) {
+            if (target == source) {
+                continue;
+            }
+            final LongestPathResult result = graph.computeLongestPath(source, target, graph.getNumVertices(), Deadline.none());
+            assertTrue(result.isComplete());
+            assertEquals(longestPathSizeByBruteForce(graph, source, target, new boolean[graph.getNumVertices()]),
+                    result.getPath().getPath().size());
+        }
+    }
+
+    @Test
+    public void testLongestPath_parallelMatchesSequential() throws Exception {
+        final CompactGraph graph = knightGraph(4, 5);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        final int source = graph.getIndex().indexOf(new Position(0, 0));
+        try {
+            for (int target = 0; target < graph.getNumVertices(); target++) {
+                if (target == source) {
+                    continue;
+                }
+                final LongestPathResult sequential = graph.computeLongestPath(source, target, graph.getNumVertices(), Deadline.none());
+                final LongestPathResult parallel = graph.computeLongestPath(source, target, graph.getNumVertices(), Deadline.none(), pool);
+                assertTrue(parallel.isComplete());
+                assertEquals(sequential.getPath().getPath().size(), parallel.getPath().getPath().size());
+                assertEquals(graph.getIndex().vertexAt(target), parallel.getPath().getPath().get(parallel.getPath().getPath().size() - 1));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testLongestPathBySubsets_matchesBruteForce() throws Exception {
+        final CompactGraph graph = knightGraph(4, 5);
+        final int source = graph.getIndex().indexOf(new Position(0, 0));
+        for (int target = 0; target < graph.getNumVertices(); target++) {
+            if (target == source) {
+                continue;
+            }
+            final List<Vertex> path = graph.computeLongestPathBySubsets(source, target).getPath();
+            assertEquals(longestPathSizeByBruteForce(graph, source, target, new boolean[graph.getNumVertices()]), path.size());
+            assertEquals(graph.getIndex().vertexAt(source), path.get(0));
+            assertEquals(graph.getIndex().vertexAt(target), path.get(path.size() - 1));
+            for (int i = 1; i < path.size(); i++) {
+                final Position prev = (Position) path.get(i - 1);
+                final Position next = (Position) path.get(i);
+                assertEquals(5, (prev.getR() - next.getR()) * (prev.getR() - next.getR())
+                        + (prev.getC() - next.getC()) * (prev.getC() - next.getC()));
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshot_roundTrip() throws Exception {
+        final Graph source = simpleGraph();
+        source.addEdge(new Position(6, 6), new Position(4, 4), 300.5);
+        final CompactGraph graph = source.toCompactGraph();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GraphSnapshot.write(graph, 42, out);
+        final CompactGraph copy = GraphSnapshot.read(ByteBuffer.wrap(out.toByteArray()), graph.getIndex(), 42);
+        assertArrayEquals(graph.offsets, copy.offsets);
+        assertArrayEquals(graph.targets, copy.targets);
+        assertArrayEquals(graph.weights, copy.weights, 0);
+        assertEquals(graph.computeShortestPath(new Position(0, 0), new Position(4, 4)),
+                copy.computeShortestPath(new Position(0, 0), new Position(4, 4)));
+        try {
+            GraphSnapshot.read(ByteBuffer.wrap(out.toByteArray()), graph.getIndex(), 43);
+            fail("Read a snapshot of a different source.");
+        } catch (IOException e) {
+            // expected
+        }
+        // an edge count far past the end of the snapshot, which follows the magic, version, checksum and vertex count.
+        final ByteBuffer huge = ByteBuffer.wrap(out.toByteArray());
+        huge.putInt(18, Integer.MAX_VALUE);
+        try {
+            GraphSnapshot.read(huge, graph.getIndex(), 42);
+            fail("Read a snapshot with more edges than bytes.");
+        } catch (IOException e) {
+            // expected
+        }
+        // the fractional weight makes the weights doubles, so the last eight bytes are the weight of the last edge.
+        for (final double weight : new double[]{-1, Double.NaN, Double.POSITIVE_INFINITY}) {
+            final ByteBuffer corrupt = ByteBuffer.wrap(out.toByteArray());
+            corrupt.putDouble(corrupt.capacity() - 8, weight);
+            try {
+                GraphSnapshot.read(corrupt, graph.getIndex(), 42);
+                fail("Read a snapshot with edge weight " + weight);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testPackedPath_matchesList() throws Exception {
+        final CompactGraph graph = simpleGraph().toCompactGraph();
+        final Path packed = graph.computeShortestPath(new Position(0, 0), new Position(6, 6));
+        assertTrue(packed.isPacked());
+        final Path list = new Path(Lists.newArrayList(packed.getPath()), packed.getWeight());
+        assertFalse(list.isPacked());
+        assertEquals(list, packed);
+        assertEquals(list.hashCode(), packed.hashCode());
+        assertEquals(4, packed.size());
+        assertEquals(new Position(5, 5), packed.getPath().get(1));
+        assertEquals(graph.getIndex().indexOf(new Position(3, 3)), packed.getId(2));
+    }
+
+    @Test
+    public void testSearchContextPool_keepsAtMostMaxIdle() throws Exception {
+        final CompactGraph graph = simpleGraph().toCompactGraph();
+        final SearchContextPool pool = new SearchContextPool(graph.getNumVertices(), 2);
+        final SearchContext first = pool.acquire();
+        final SearchContext second = pool.acquire();
+        final SearchContext third = pool.acquire();
+        assertEquals(graph.computeShortestPath(0, 6), graph.computeShortestPath(0, 6, third));
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        assertEquals(2, pool.getNumIdle());
+        // the most recently released context is reused first.
+        assertTrue(pool.acquire() == second);
+        assertEquals(1, pool.getNumIdle());
+    }
+}
@@ -121,4 +121,26 @@ public class GraphTest {
         List<Edge> correct = Lists.newArrayList(new Edge(v4, 40), new Edge(v0, 40));
         assertEquals(correct, e);
     }
+
+    /**
+     * Longest path on a small graph where the shortest path skips most vertices.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLongestPath_simple() throws Exception {
+        Vertex v0 = new Position(0, 0);
+        Vertex v1 = new Position(1, 1);
+        Vertex v2 = new Position(2, 2);
+        Vertex v3 = new Position(3, 3);
+        Vertex v4 = new Position(4, 4);
+        final Graph graph = new Graph();
+        for (Vertex[] edge : new Vertex[][]{{v0, v1}, {v1, v2}, {v2, v3}, {v3, v4}, {v0, v4}, {v1, v3}}) {
+            graph.addEdge(edge[0], edge[1], 1);
+            graph.addEdge(edge[1], edge[0], 1);
+        }
+        Path p = graph.computeLongestPath(v0, v4, 5);
+        assertEquals(Lists.newArrayList(v0, v1, v2, v3, v4), p.getPath());
+        assertEquals(4, p.getWeight(), 0);
+    }
 }